@@ -0,0 +1,115 @@
+package io.patchfox.input_service.helpers;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.packageurl.MalformedPackageURLException;
+
+import io.patchfox.input_service.SyntheticBundle;
+import io.patchfox.input_service.repositories.PackageRepository;
+import io.patchfox.package_utils.data.DataFile;
+import io.patchfox.package_utils.data.sbom.SbomPackageData;
+import io.patchfox.package_utils.data.sbom.syft.SyftSbomPackageData;
+import io.patchfox.package_utils.util.FileHelpers;
+
+
+/*
+ * HibernateHelper.savePackages() minus the database - walking the sbom's dependency tree and pulling apart each purl
+ * into the columns createAndAssociatePackage() is called with. the repository is a stand-in that only tallies what
+ * it's called with, so what's measured is the flattening and not postgres.
+ *
+ * example:
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.args="SavePackagesBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SavePackagesBenchmark {
+
+    @Param({"10", "1000", "10000", "50000"})
+    public int packageCount;
+
+    private final HibernateHelper hibernateHelper = new HibernateHelper();
+
+    private final ZonedDateTime updatedAt = ZonedDateTime.now();
+
+    private SbomPackageData<SyftSbomPackageData> sbom;
+
+    // what the stand-in tallies. returned from the benchmark so none of the purl parsing can be optimized away
+    private long columnChars;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+        var workingDir = Files.createTempDirectory("patchfox-bench");
+        try {
+            var projectName = SyntheticBundle.projectName(0);
+            var sbomPath = workingDir.resolve(SyntheticBundle.SBOM_FILE_NAME);
+            try (var out = Files.newOutputStream(sbomPath)) {
+                SyntheticBundle.writeSyftSbom(out, projectName, packageCount);
+            }
+
+            var dataFile = new DataFile(sbomPath.toFile(), projectName);
+            if (dataFile.getFileType() != DataFile.DataFileTypeEnum.SYFT_SBOM) {
+                throw new IllegalStateException(
+                    "DataFile doesn't see " + SyntheticBundle.SBOM_FILE_NAME + " as a syft sbom - set "
+                    + "patchfox.bench.sbom-file to a name it does"
+                );
+            }
+            sbom = (SbomPackageData<SyftSbomPackageData>) dataFile.process().get();
+        } finally {
+            FileHelpers.safeDeletePath(workingDir);
+        }
+
+        ReflectionTestUtils.setField(hibernateHelper, "packageRepository", standInPackageRepository());
+    }
+
+
+    @Benchmark
+    public long savePackages() throws MalformedPackageURLException {
+        columnChars = 0;
+        hibernateHelper.savePackages(1L, sbom, updatedAt);
+        return columnChars;
+    }
+
+
+    private PackageRepository standInPackageRepository() {
+        return (PackageRepository) Proxy.newProxyInstance(
+            PackageRepository.class.getClassLoader(),
+            new Class<?>[] { PackageRepository.class },
+            (proxy, method, args) -> switch (method.getName()) {
+                case "createAndAssociatePackage" -> {
+                    for (var arg : args) {
+                        if (arg instanceof String column) { columnChars += column.length(); }
+                    }
+                    yield 1L;
+                }
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "StandInPackageRepository";
+                default -> throw new UnsupportedOperationException(method.getName());
+            }
+        );
+    }
+
+}
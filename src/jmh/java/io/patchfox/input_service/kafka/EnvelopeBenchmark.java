@@ -0,0 +1,109 @@
+package io.patchfox.input_service.kafka;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import io.patchfox.package_utils.json.ApiResponse;
+
+
+/*
+ * JSON vs CBOR envelopes through EnvelopeSerializer/EnvelopeDeserializer exactly as the producer and listener
+ * configure them - no broker involved. run with "-prof gc" to see allocation per record alongside the time.
+ *
+ * example:
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.args="EnvelopeBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    private static final String TOPIC = "bench";
+
+    @Param({"JSON", "CBOR"})
+    public EnvelopeFormat format;
+
+    // entries in the response's data map. a status lookup is a handful, a latency report is dozens
+    @Param({"10", "1000"})
+    public int entryCount;
+
+    private EnvelopeSerializer<ApiResponse> serializer;
+
+    private final EnvelopeDeserializer<ApiResponse> deserializer = new EnvelopeDeserializer<>();
+
+    private ApiResponse apiResponse;
+
+    private byte[] serialized;
+
+    private RecordHeaders serializedHeaders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serializer = new EnvelopeSerializer<>(format);
+        serializer.configure(Map.of(), false);
+        deserializer.configure(
+            Map.of(
+                JsonDeserializer.VALUE_DEFAULT_TYPE, ApiResponse.class.getName(),
+                JsonDeserializer.TRUSTED_PACKAGES, "*"
+            ),
+            false
+        );
+
+        List<Map<String, Object>> entries = new ArrayList<>(entryCount);
+        for (var i = 0; i < entryCount; i++) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("purl", String.format("pkg:generic/bench/project-%05d::main@maven", i));
+            entry.put("status", "READY_FOR_PROCESSING");
+            entry.put("eventCount", i);
+            entry.put("p95Millis", 1000.0 + i);
+            entries.add(entry);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("entries", entries);
+
+        apiResponse = ApiResponse.builder()
+                                 .code(200)
+                                 .txid(UUID.randomUUID())
+                                 .requestReceivedAt(ZonedDateTime.now().toString())
+                                 .data(data)
+                                 .build();
+
+        serializedHeaders = new RecordHeaders();
+        serialized = serializer.serialize(TOPIC, serializedHeaders, apiResponse);
+    }
+
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), apiResponse);
+    }
+
+    @Benchmark
+    public ApiResponse deserialize() {
+        return deserializer.deserialize(TOPIC, serializedHeaders, serialized);
+    }
+
+}
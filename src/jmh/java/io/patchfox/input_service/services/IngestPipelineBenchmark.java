@@ -0,0 +1,183 @@
+package io.patchfox.input_service.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+
+import io.patchfox.input_service.SyntheticBundle;
+import io.patchfox.package_utils.data.DataFile;
+import io.patchfox.package_utils.data.pkg.PackageWrapper;
+import io.patchfox.package_utils.util.FileHelpers;
+import io.patchfox.package_utils.util.Pair;
+
+
+/*
+ * the CPU side of InputService.ingestGitEvent() - unzipping a bundle, sorting its files into projects, parsing them
+ * into a PackageWrapper, and serializing that into the event payload - on bundles of 10 to 50,000 packages.
+ *
+ * InputService is used as-is without a spring context. none of these methods touch the db or kafka so there is
+ * nothing to stand in for.
+ *
+ * example:
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.args="IngestPipelineBenchmark -p packageCount=10000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IngestPipelineBenchmark {
+
+    @Param({"10", "1000", "10000", "50000"})
+    public int packageCount;
+
+    // real uploads carry one project. more exercise processZipFile's buffer flushing
+    @Param({"1"})
+    public int projectCount;
+
+    private final InputService inputService = new InputService();
+
+    private final UUID txid = UUID.randomUUID();
+
+    private final ObjectMapper sharedMapper = new ObjectMapper().findAndRegisterModules();
+
+    byte[] bundle;
+
+    private Pair<Path, Path> extractedPathPair;
+
+    private PackageURL eventPurl;
+
+    private Map<String, List<DataFile>> projectsMap;
+
+    private PackageWrapper payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, MalformedPackageURLException {
+        bundle = SyntheticBundle.zip(projectCount, packageCount);
+
+        // parsing benchmarks work from one extraction that is kept until the end of the trial
+        extractedPathPair = serialize(bundle);
+        projectsMap = inputService.processZipFile(extractedPathPair, txid);
+        if (projectsMap.size() != projectCount) {
+            throw new IllegalStateException(
+                "expected " + projectCount + " project(s) in the synthetic bundle but found " + projectsMap.size()
+                + ". DataFile probably doesn't recognize the file names - set patchfox.bench.sbom-file, "
+                + "patchfox.bench.blame-file and patchfox.bench.metadata-file to ones it does"
+            );
+        }
+
+        // same narrowing to one project ingestGitEvent() does
+        var projectName = SyntheticBundle.projectName(0);
+        projectsMap = Map.of(projectName, projectsMap.get(projectName));
+        eventPurl = new PackageURL(SyntheticBundle.eventPurl(projectName));
+
+        var parsed = inputService.parseProjectsMap(eventPurl, projectsMap, txid);
+        if (parsed.isEmpty()) {
+            throw new IllegalStateException("synthetic bundle didn't parse into a PackageWrapper");
+        }
+        payload = parsed.get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileHelpers.safeDeletePath(extractedPathPair.getLeft());
+    }
+
+
+    /*
+     * processZipFile() extracts into the directory it is handed so every invocation needs a fresh copy of the bundle
+     * on disk. writing it there is not part of the measurement
+     */
+    @State(Scope.Thread)
+    public static class SerializedBundle {
+
+        Pair<Path, Path> pathPair;
+
+        @Setup(Level.Invocation)
+        public void setup(IngestPipelineBenchmark benchmark) throws IOException {
+            pathPair = serialize(benchmark.bundle);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            FileHelpers.safeDeletePath(pathPair.getLeft());
+        }
+
+    }
+
+
+    @Benchmark
+    public Map<String, List<DataFile>> processZipFile(SerializedBundle serializedBundle) {
+        return inputService.processZipFile(serializedBundle.pathPair, txid);
+    }
+
+    @Benchmark
+    public Map<String, List<DataFile>> checkAndClearDiscoveredFileBuffers() {
+        // the method empties the buffers it's handed so each call gets its own
+        var dataFiles = new ArrayList<>(projectsMap.values().iterator().next());
+        var fileTypes = new ArrayList<DataFile.DataFileTypeEnum>(dataFiles.size());
+        for (var dataFile : dataFiles) { fileTypes.add(dataFile.getFileType()); }
+        Map<String, List<DataFile>> rv = new HashMap<>();
+
+        inputService.checkAndClearDiscoveredFileBuffers(
+            fileTypes,
+            List.of(
+                DataFile.DataFileTypeEnum.BUILD_FILE_GIT_BLAME,
+                DataFile.DataFileTypeEnum.SYFT_SBOM,
+                DataFile.DataFileTypeEnum.ETL_BUILD_METADATA
+            ),
+            rv,
+            dataFiles,
+            SyntheticBundle.projectName(0)
+        );
+        return rv;
+    }
+
+    @Benchmark
+    public List<PackageWrapper> parseProjectsMap() {
+        return inputService.parseProjectsMap(eventPurl, projectsMap, txid);
+    }
+
+    // what ingestGitEvent() does today - a new mapper per event
+    @Benchmark
+    public byte[] serializePayload() throws JsonProcessingException {
+        return new ObjectMapper().findAndRegisterModules().writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] serializePayloadSharedMapper() throws JsonProcessingException {
+        return sharedMapper.writeValueAsBytes(payload);
+    }
+
+
+    private static Pair<Path, Path> serialize(byte[] bundle) throws IOException {
+        return FileHelpers.safeSerializeFile(SyntheticBundle.BUNDLE_FILE_NAME, new ByteArrayInputStream(bundle));
+    }
+
+}
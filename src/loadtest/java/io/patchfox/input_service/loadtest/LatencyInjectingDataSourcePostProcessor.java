@@ -0,0 +1,46 @@
+package io.patchfox.input_service.loadtest;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+
+/*
+ * an embedded postgres on the same box answers in microseconds, which would make the service look a lot faster than
+ * it is against a real one. this wraps the service's DataSource so every statement first waits out a draw from the
+ * latency model - while holding its connection, as it would be on the wire.
+ */
+public class LatencyInjectingDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final LatencyModel latencyModel;
+
+    public LatencyInjectingDataSourcePostProcessor(LatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if ( !(bean instanceof DataSource dataSource) ) { return bean; }
+
+        return ProxyDataSourceBuilder.create(dataSource)
+                                     .name("loadtest-latency")
+                                     .listener(new QueryExecutionListener() {
+                                         @Override
+                                         public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                                             latencyModel.pause();
+                                         }
+
+                                         @Override
+                                         public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {}
+                                     })
+                                     .build();
+    }
+
+}
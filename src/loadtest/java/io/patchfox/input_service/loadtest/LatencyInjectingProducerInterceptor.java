@@ -0,0 +1,41 @@
+package io.patchfox.input_service.loadtest;
+
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+
+/*
+ * the embedded broker acks about as fast as the producer can send. this makes every record the service produces wait
+ * out a draw from the latency model first, standing in for the round trip to a real cluster. configured through
+ * producer properties so it applies to every producer the service builds.
+ */
+public class LatencyInjectingProducerInterceptor<K, V> implements ProducerInterceptor<K, V> {
+
+    public static final String LATENCY_CONFIG = "patchfox.loadtest.latency";
+    public static final String SEED_CONFIG = "patchfox.loadtest.seed";
+
+    private LatencyModel latencyModel;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        var spec = LatencyModel.Spec.parse(String.valueOf(configs.get(LATENCY_CONFIG)));
+        var seed = Long.parseLong(String.valueOf(configs.get(SEED_CONFIG)));
+        latencyModel = spec.isNone() ? null : new LatencyModel(spec, seed);
+    }
+
+    @Override
+    public ProducerRecord<K, V> onSend(ProducerRecord<K, V> record) {
+        if (latencyModel != null) { latencyModel.pause(); }
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {}
+
+    @Override
+    public void close() {}
+
+}
@@ -0,0 +1,72 @@
+package io.patchfox.input_service.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/*
+ * delay the stand-ins add to each call. network and server time is long-tailed so delays are drawn from a log-normal
+ * fitted to a median and a p99 - most calls are quick and the odd one is many times slower, like the real thing.
+ */
+public class LatencyModel {
+
+    // z-score of the 99th percentile of a standard normal
+    private static final double Z_99 = 2.326;
+
+    private final double mu;
+
+    private final double sigma;
+
+    // Random is thread safe. the stand-ins are called from many threads
+    private final Random random;
+
+    public LatencyModel(Spec spec, long seed) {
+        this.mu = Math.log(Math.max(spec.medianMillis(), 0.001));
+        this.sigma = (spec.p99Millis() > spec.medianMillis())
+            ? Math.log(spec.p99Millis() / spec.medianMillis()) / Z_99
+            : 0;
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * parks the calling thread for one draw from the distribution
+     */
+    public void pause() {
+        var millis = Math.exp(mu + sigma * random.nextGaussian());
+        LockSupport.parkNanos((long) (millis * TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+
+    /**
+     *
+     * @param medianMillis
+     * @param p99Millis
+     */
+    public record Spec(double medianMillis, double p99Millis) {
+
+        /**
+         *
+         * @param spec "median:p99" in milliseconds, or "0" for no added latency
+         * @return
+         */
+        public static Spec parse(String spec) {
+            var split = spec.split(":");
+            var median = Double.parseDouble(split[0]);
+            var p99 = (split.length > 1) ? Double.parseDouble(split[1]) : median;
+            return new Spec(median, p99);
+        }
+
+        public boolean isNone() {
+            return medianMillis <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return medianMillis + ":" + p99Millis;
+        }
+
+    }
+
+}
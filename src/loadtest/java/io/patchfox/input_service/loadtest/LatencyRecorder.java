@@ -0,0 +1,77 @@
+package io.patchfox.input_service.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ * every latency and error of one stream of requests, kept whole rather than bucketed so percentiles are exact. a
+ * long per request is small even for a soak - an hour at 50 req/s is well under 2MB.
+ */
+public class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+
+    private int count;
+
+    private int errorCount;
+
+    public synchronized void recordSuccess(long latencyNanos) {
+        if (count == latencies.length) { latencies = Arrays.copyOf(latencies, count * 2); }
+        latencies[count++] = latencyNanos;
+    }
+
+    public synchronized void recordError() {
+        errorCount++;
+    }
+
+
+    /**
+     *
+     * @return what's been recorded so far. the recorder carries on recording
+     */
+    public synchronized Summary summarize() {
+        var sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return new Summary(
+            count,
+            errorCount,
+            percentileMillis(sorted, 0.50),
+            percentileMillis(sorted, 0.95),
+            percentileMillis(sorted, 0.99),
+            (count == 0) ? 0 : toMillis(sorted[count - 1])
+        );
+    }
+
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) { return 0; }
+        var index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return toMillis(sorted[Math.max(index, 0)]);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+
+    public record Summary(
+        int successCount,
+        int errorCount,
+        double p50Millis,
+        double p95Millis,
+        double p99Millis,
+        double maxMillis
+    ) {
+
+        public int requestCount() {
+            return successCount + errorCount;
+        }
+
+        public double errorRate() {
+            return (requestCount() == 0) ? 0 : errorCount / (double) requestCount();
+        }
+
+    }
+
+}
@@ -0,0 +1,368 @@
+package io.patchfox.input_service.loadtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import io.patchfox.input_service.SyntheticBundle;
+import io.patchfox.input_service.components.BundleStagingStore;
+import io.patchfox.input_service.controllers.InputController;
+import io.patchfox.input_service.kafka.EnvelopeDeserializer;
+import io.patchfox.input_service.kafka.EnvelopeSerializer;
+import io.patchfox.package_utils.json.ApiRequest;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * offers git events to a running service at a fixed average rate over HTTP and through the kafka request listener.
+ *
+ * load is open-model: requests are sent when the schedule says, whether or not earlier ones have come back, and
+ * latency is measured from when a request was due rather than when it went out. a service that stalls therefore
+ * shows up as a latency spike instead of quietly lowering the offered rate.
+ *
+ * the schedule - arrival times, channel, bundle size, datasource and commit of every request - comes from the seed
+ * alone.
+ */
+@Slf4j
+public class LoadGenerator implements AutoCloseable {
+
+    public enum Channel { HTTP, KAFKA }
+
+    public static final String DOMAIN = "loadtest";
+
+    // commits for each datasource are this far apart, starting from COMMIT_EPOCH, so they arrive in commit order
+    private static final Instant COMMIT_EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Duration COMMIT_SPACING = Duration.ofMinutes(1);
+
+    private final LoadTestConfig config;
+
+    private final URI inputUri;
+
+    private final String requestTopic;
+
+    private final String responseTopic;
+
+    private final BundleStagingStore bundleStagingStore;
+
+    private final Map<Integer, byte[]> bundlesBySize = new HashMap<>();
+
+    private final Map<Channel, LatencyRecorder> recorders = Map.of(
+        Channel.HTTP, new LatencyRecorder(),
+        Channel.KAFKA, new LatencyRecorder()
+    );
+
+    // requests sent during warmup go here and are never reported
+    private final LatencyRecorder warmupRecorder = new LatencyRecorder();
+
+    private final HttpClient httpClient;
+
+    private final KafkaProducer<String, ApiRequest> kafkaProducer;
+
+    private final KafkaConsumer<String, ApiResponse> kafkaConsumer;
+
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    // kafka requests waiting on a response, by txid
+    private final Map<UUID, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private Thread responseReader;
+
+    public LoadGenerator(
+        LoadTestConfig config,
+        int httpPort,
+        String kafkaBootstrapServers,
+        String requestTopic,
+        String responseTopic,
+        BundleStagingStore bundleStagingStore
+    ) {
+        this.config = config;
+        this.inputUri = URI.create("http://localhost:" + httpPort + InputController.INPUT_GIT_PATH);
+        this.requestTopic = requestTopic;
+        this.responseTopic = responseTopic;
+        this.bundleStagingStore = bundleStagingStore;
+
+        for (var packageCount : config.mix().keySet()) {
+            bundlesBySize.put(packageCount, SyntheticBundle.zip(1, packageCount));
+        }
+
+        httpClient = HttpClient.newBuilder()
+                               .executor(senders)
+                               .connectTimeout(Duration.ofSeconds(10))
+                               .build();
+
+        var producerProperties = new Properties();
+        producerProperties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
+        producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, EnvelopeSerializer.class);
+        producerProperties.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+        kafkaProducer = new KafkaProducer<>(producerProperties);
+
+        var consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
+        consumerProperties.put(ConsumerConfig.GROUP_ID_CONFIG, "loadtest-" + UUID.randomUUID());
+        consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        consumerProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProperties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, EnvelopeDeserializer.class);
+        consumerProperties.put(JsonDeserializer.VALUE_DEFAULT_TYPE, ApiResponse.class.getName());
+        consumerProperties.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        kafkaConsumer = new KafkaConsumer<>(consumerProperties);
+    }
+
+
+    /**
+     * offers load for the warmup and then the configured duration, then waits up to the timeout for what's still in
+     * flight. blocks until done.
+     *
+     * @throws InterruptedException
+     */
+    public void run() throws InterruptedException {
+        kafkaConsumer.subscribe(List.of(responseTopic));
+        responseReader = Thread.ofPlatform().name("loadtest-responses").start(this::readResponses);
+
+        var random = new SplittableRandom(config.seed());
+        var totalWeight = config.mix().values().stream().mapToInt(Integer::intValue).sum();
+        var commitCounts = new int[config.datasources()];
+        var meanGapNanos = TimeUnit.SECONDS.toNanos(1) / config.rate();
+        var warmupNanos = config.warmup().toNanos();
+        var endNanos = warmupNanos + config.duration().toNanos();
+
+        var startedAt = System.nanoTime();
+        var offsetNanos = 0L;
+        while (true) {
+            // poisson arrivals - exponentially distributed gaps
+            offsetNanos += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (offsetNanos >= endNanos) { break; }
+
+            var channel = (random.nextDouble() < config.kafkaShare()) ? Channel.KAFKA : Channel.HTTP;
+            var packageCount = pickPackageCount(random.nextInt(totalWeight));
+            var datasourceIndex = random.nextInt(config.datasources());
+            var commitHash = HexFormat.of().toHexDigits(random.nextLong())
+                + HexFormat.of().toHexDigits(random.nextLong())
+                + HexFormat.of().toHexDigits(random.nextInt());
+            var commitDateTime = COMMIT_EPOCH.plus(COMMIT_SPACING.multipliedBy(commitCounts[datasourceIndex]++));
+
+            var dueAt = startedAt + offsetNanos;
+            var waitNanos = dueAt - System.nanoTime();
+            if (waitNanos > 0) { LockSupport.parkNanos(waitNanos); }
+
+            var recorder = (offsetNanos < warmupNanos) ? warmupRecorder : recorders.get(channel);
+            var eventPurl = getEventPurl(datasourceIndex, commitHash, commitDateTime);
+            var bundle = bundlesBySize.get(packageCount);
+            inFlight.incrementAndGet();
+            senders.submit(() -> {
+                switch (channel) {
+                    case HTTP -> sendHttp(eventPurl, bundle, dueAt, recorder);
+                    case KAFKA -> sendKafka(eventPurl, bundle, dueAt, recorder);
+                }
+            });
+        }
+
+        var drainUntil = System.nanoTime() + config.timeout().toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        expirePendingRequests(Long.MAX_VALUE);
+    }
+
+
+    /**
+     *
+     * @return results so far for each channel
+     */
+    public Map<Channel, LatencyRecorder.Summary> summarize() {
+        Map<Channel, LatencyRecorder.Summary> rv = new EnumMap<>(Channel.class);
+        recorders.forEach((channel, recorder) -> rv.put(channel, recorder.summarize()));
+        return rv;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running.set(false);
+        if (responseReader != null) { responseReader.join(); }
+        senders.shutdownNow();
+        kafkaProducer.close();
+        httpClient.close();
+    }
+
+
+    private void sendHttp(String eventPurl, byte[] bundle, long dueAt, LatencyRecorder recorder) {
+        var boundary = "loadtest-" + UUID.randomUUID();
+        // datasourceEvent goes in the query string so rate limits are checked before the bundle is read
+        var uri = URI.create(
+            inputUri + "?" + InputController.DATASOURCE_EVENT_PARAM + "=" 
+                + URLEncoder.encode(eventPurl, StandardCharsets.UTF_8)
+        );
+        var request = HttpRequest.newBuilder(uri)
+                                 .timeout(config.timeout())
+                                 .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                                 .POST(HttpRequest.BodyPublishers.ofByteArray(getMultipartBody(boundary, bundle)))
+                                 .build();
+        try {
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 == 2) {
+                recorder.recordSuccess(System.nanoTime() - dueAt);
+            } else {
+                log.debug("{} for {}", response.statusCode(), eventPurl);
+                recorder.recordError();
+            }
+        } catch (IOException e) {
+            log.debug("HTTP request for {} failed: {}", eventPurl, e.toString());
+            recorder.recordError();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recorder.recordError();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+
+    private void sendKafka(String eventPurl, byte[] bundle, long dueAt, LatencyRecorder recorder) {
+        // bundles go through the claim-check store as real producers send them, not inline
+        BundleStagingStore.StagedBundle stagedBundle;
+        try {
+            stagedBundle = bundleStagingStore.stage(new ByteArrayInputStream(bundle));
+        } catch (IOException e) {
+            log.warn("unable to stage bundle for {}", eventPurl, e);
+            recorder.recordError();
+            inFlight.decrementAndGet();
+            return;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put(InputController.DATASOURCE_EVENT_PARAM, eventPurl);
+        data.put(BundleStagingStore.EVENT_FILE_REF_KEY, stagedBundle.ref());
+        data.put(BundleStagingStore.EVENT_FILE_SHA256_KEY, stagedBundle.sha256());
+        data.put(BundleStagingStore.EVENT_FILE_NAME_KEY, SyntheticBundle.BUNDLE_FILE_NAME);
+
+        var txid = UUID.randomUUID();
+        var apiRequest = ApiRequest.builder()
+                                   .txid(txid)
+                                   .verb(ApiRequest.httpVerb.POST)
+                                   .uri(URI.create(InputController.INPUT_GIT_PATH))
+                                   .responseTopicName(responseTopic)
+                                   .data(data)
+                                   .build();
+
+        pendingRequests.put(txid, new PendingRequest(dueAt, recorder));
+        var datasourcePurl = eventPurl.substring(0, eventPurl.indexOf('?'));
+        kafkaProducer.send(new ProducerRecord<>(requestTopic, datasourcePurl, apiRequest), (metadata, e) -> {
+            if (e != null) {
+                log.debug("kafka send for {} failed: {}", eventPurl, e.toString());
+                if (pendingRequests.remove(txid) != null) {
+                    recorder.recordError();
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+    }
+
+
+    private void readResponses() {
+        try {
+            while (running.get()) {
+                for (var record : kafkaConsumer.poll(Duration.ofMillis(100))) {
+                    var apiResponse = record.value();
+                    if (apiResponse == null || apiResponse.getTxid() == null) { continue; }
+                    var pendingRequest = pendingRequests.remove(apiResponse.getTxid());
+                    if (pendingRequest == null) { continue; }
+
+                    if (apiResponse.getCode() / 100 == 2) {
+                        pendingRequest.recorder().recordSuccess(System.nanoTime() - pendingRequest.dueAt());
+                    } else {
+                        pendingRequest.recorder().recordError();
+                    }
+                    inFlight.decrementAndGet();
+                }
+                expirePendingRequests(System.nanoTime() - config.timeout().toNanos());
+            }
+        } finally {
+            kafkaConsumer.close();
+        }
+    }
+
+
+    private void expirePendingRequests(long dueBefore) {
+        for (var entry : pendingRequests.entrySet()) {
+            if (entry.getValue().dueAt() < dueBefore && pendingRequests.remove(entry.getKey()) != null) {
+                entry.getValue().recorder().recordError();
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+
+    private int pickPackageCount(int draw) {
+        for (var entry : config.mix().entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) { return entry.getKey(); }
+        }
+        throw new IllegalStateException("draw outside the total weight of the mix");
+    }
+
+
+    private static String getEventPurl(int datasourceIndex, String commitHash, Instant commitDateTime) {
+        return String.format("pkg:generic/%s/datasource-%04d::main@maven", DOMAIN, datasourceIndex)
+            + "?commitHash=" + commitHash
+            + "&commitDatetime=" + commitDateTime.atOffset(ZoneOffset.UTC);
+    }
+
+
+    private static byte[] getMultipartBody(String boundary, byte[] bundle) {
+        var body = new ByteArrayOutputStream(bundle.length + 512);
+        var filePartHeader = "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"" + InputController.EVENT_FILE_DATA_PARAM + "\"; "
+            + "filename=\"" + SyntheticBundle.BUNDLE_FILE_NAME + "\"\r\n"
+            + "Content-Type: application/zip\r\n\r\n";
+        body.writeBytes(filePartHeader.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(bundle);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+
+    private record PendingRequest(long dueAt, LatencyRecorder recorder) {}
+
+}
@@ -0,0 +1,260 @@
+package io.patchfox.input_service.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.patchfox.input_service.App;
+import io.patchfox.input_service.components.BundleStagingStore;
+
+
+/*
+ * end-to-end load and soak test. boots the whole service in this JVM against the stand-ins, offers it the seeded
+ * workload over HTTP and kafka, and reports latency percentiles, throughput and error rate per channel along with what
+ * the heap and GC did over the measured window.
+ *
+ * the service and the load generator share the JVM so the heap and GC numbers include both. the generator's share is
+ * small and the same from run to run, so runs of different versions with the same seed still compare like for like.
+ *
+ * run with:
+ *     mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--rate=20 --duration=PT10M --seed=7"
+ *
+ * see LoadTestConfig for the options.
+ */
+public class LoadTest {
+
+    private static final Path OUTPUT_DIR = Path.of("target", "loadtest");
+
+    private static final String REQUEST_TOPIC = "loadtest_REQUEST";
+    private static final String RESPONSE_TOPIC = "loadtest_RESPONSE";
+
+    // where the service sends its answers to our kafka requests. kept apart from its own response topic, which it
+    // listens to itself
+    private static final String REPLY_TOPIC = "loadtest_REPLY";
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadTestConfig.parse(args);
+        Files.createDirectories(OUTPUT_DIR);
+
+        try (var standIns = new StandIns(config, REQUEST_TOPIC, RESPONSE_TOPIC, REPLY_TOPIC)) {
+            var context = startService(config, standIns);
+            var port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            try (
+                var generator = new LoadGenerator(
+                    config,
+                    port,
+                    standIns.getKafkaBootstrapServers(),
+                    REQUEST_TOPIC,
+                    REPLY_TOPIC,
+                    context.getBean(BundleStagingStore.class)
+                )
+            ) {
+                var report = runAndReport(config, standIns, generator);
+                var reportPath = OUTPUT_DIR.resolve(
+                    String.format(
+                        "report-%s-seed%d-%d.json",
+                        System.getProperty("loadtest.version", "dev"),
+                        config.seed(),
+                        Instant.now().getEpochSecond()
+                    )
+                );
+                new ObjectMapper().findAndRegisterModules()
+                                  .enable(SerializationFeature.INDENT_OUTPUT)
+                                  .writeValue(reportPath.toFile(), report);
+                System.out.println("report written to " + reportPath);
+            } finally {
+                context.close();
+            }
+        }
+
+        // the service leaves non-daemon threads behind (kafka, hikari, schedulers) that we're done waiting on
+        System.exit(0);
+    }
+
+
+    private static ConfigurableApplicationContext startService(LoadTestConfig config, StandIns standIns) {
+        var app = new SpringApplication(App.class);
+        if (standIns.isPostgresEmbedded() && !config.dbLatency().isNone()) {
+            var dbLatency = new LatencyModel(config.dbLatency(), config.seed());
+            app.addInitializers(context ->
+                context.getBeanFactory().addBeanPostProcessor(new LatencyInjectingDataSourcePostProcessor(dbLatency))
+            );
+        }
+
+        List<String> properties = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=" + standIns.getJdbcUrl(),
+            "--spring.datasource.username=" + standIns.getJdbcUsername(),
+            "--spring.datasource.password=" + standIns.getJdbcPassword(),
+            "--spring.kafka.bootstrap-servers=" + standIns.getKafkaBootstrapServers(),
+            "--spring.kafka.request-topic=" + REQUEST_TOPIC,
+            "--spring.kafka.response-topic=" + RESPONSE_TOPIC,
+            "--patchfox.ingest.staging.dir=" + OUTPUT_DIR.resolve("staging").toAbsolutePath(),
+            "--spring.kafka.producer.properties.interceptor.classes=" + LatencyInjectingProducerInterceptor.class.getName(),
+            "--spring.kafka.producer.properties." + LatencyInjectingProducerInterceptor.LATENCY_CONFIG + "="
+                + config.kafkaLatency(),
+            "--spring.kafka.producer.properties." + LatencyInjectingProducerInterceptor.SEED_CONFIG + "="
+                + config.seed(),
+            // the service logs as it would in production, just to a file so the progress lines stay readable
+            "--logging.file.name=" + OUTPUT_DIR.resolve("service.log"),
+            "--logging.pattern.console="
+        ));
+        return app.run(properties.toArray(String[]::new));
+    }
+
+
+    private static Map<String, Object> runAndReport(
+        LoadTestConfig config,
+        StandIns standIns,
+        LoadGenerator generator
+    ) throws InterruptedException {
+        var memory = ManagementFactory.getMemoryMXBean();
+        var maxHeapUsed = new AtomicLong();
+        var progress = Executors.newSingleThreadScheduledExecutor();
+        var startedAt = System.nanoTime();
+
+        progress.scheduleAtFixedRate(
+            () -> {
+                var elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt);
+                var heapUsed = memory.getHeapMemoryUsage().getUsed();
+                var measuring = elapsed >= config.warmup().toSeconds();
+                if (measuring) { maxHeapUsed.accumulateAndGet(heapUsed, Math::max); }
+
+                var line = new StringBuilder(String.format("%5ds %s", elapsed, measuring ? "measuring" : "warmup   "));
+                generator.summarize().forEach((channel, summary) -> line.append(String.format(
+                    " | %s ok %d err %d p95 %.0fms",
+                    channel,
+                    summary.successCount(),
+                    summary.errorCount(),
+                    summary.p95Millis()
+                )));
+                line.append(String.format(
+                    " | in flight %d | heap %dMB",
+                    generator.getInFlight(),
+                    heapUsed / (1024 * 1024)
+                ));
+                System.out.println(line);
+            },
+            config.reportInterval().toMillis(),
+            config.reportInterval().toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+
+        // gc is only counted over the measured window
+        var gcStart = new AtomicReference<GcSnapshot>();
+        progress.schedule(() -> gcStart.set(GcSnapshot.capture()), config.warmup().toMillis(), TimeUnit.MILLISECONDS);
+
+        generator.run();
+        progress.shutdownNow();
+        var gcEnd = GcSnapshot.capture();
+        var gcDelta = gcEnd.minus((gcStart.get() == null) ? gcEnd : gcStart.get());
+        maxHeapUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+
+        var measuredSeconds = config.duration().toMillis() / 1000.0;
+        Map<String, Object> channels = new LinkedHashMap<>();
+        System.out.println();
+        System.out.printf("%-6s %8s %8s %8s %10s %10s %10s %10s %8s%n",
+            "", "requests", "ok/s", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "err %");
+        for (var entry : generator.summarize().entrySet()) {
+            var summary = entry.getValue();
+            var throughput = summary.successCount() / measuredSeconds;
+            System.out.printf("%-6s %8d %8.2f %8d %10.1f %10.1f %10.1f %10.1f %8.2f%n",
+                entry.getKey(),
+                summary.requestCount(),
+                throughput,
+                summary.errorCount(),
+                summary.p50Millis(),
+                summary.p95Millis(),
+                summary.p99Millis(),
+                summary.maxMillis(),
+                summary.errorRate() * 100
+            );
+
+            Map<String, Object> channel = new LinkedHashMap<>();
+            channel.put("summary", summary);
+            channel.put("throughputPerSecond", throughput);
+            channels.put(entry.getKey().toString(), channel);
+        }
+
+        // collection time, not strictly pause time - concurrent collectors count work done alongside the application
+        var gcTimeFraction = gcDelta.totalMillis() / (measuredSeconds * 1000);
+        System.out.printf(
+            "%nheap: max used %dMB of %dMB | gc: %d collections, %dms total (%.2f%% of the measured window)%n",
+            maxHeapUsed.get() / (1024 * 1024),
+            memory.getHeapMemoryUsage().getMax() / (1024 * 1024),
+            gcDelta.totalCount(),
+            gcDelta.totalMillis(),
+            gcTimeFraction * 100
+        );
+
+        Map<String, Object> rv = new LinkedHashMap<>();
+        rv.put("version", System.getProperty("loadtest.version", "dev"));
+        rv.put("config", config);
+        rv.put("postgres", standIns.isPostgresEmbedded() ? "embedded" : "local");
+        rv.put("channels", channels);
+        rv.put("maxHeapUsedBytes", maxHeapUsed.get());
+        rv.put("maxHeapBytes", memory.getHeapMemoryUsage().getMax());
+        rv.put("gcByCollector", gcDelta.byCollector());
+        rv.put("gcTimeFraction", gcTimeFraction);
+        return rv;
+    }
+
+
+    /*
+     * collection counts and accumulated collection time per collector
+     */
+    private record GcSnapshot(Map<String, long[]> countAndMillisByCollector) {
+
+        static GcSnapshot capture() {
+            Map<String, long[]> rv = new LinkedHashMap<>();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                rv.put(collector.getName(), new long[] { collector.getCollectionCount(), collector.getCollectionTime() });
+            }
+            return new GcSnapshot(rv);
+        }
+
+        GcSnapshot minus(GcSnapshot earlier) {
+            Map<String, long[]> rv = new LinkedHashMap<>();
+            countAndMillisByCollector.forEach((name, countAndMillis) -> {
+                var before = earlier.countAndMillisByCollector.getOrDefault(name, new long[] { 0, 0 });
+                rv.put(name, new long[] { countAndMillis[0] - before[0], countAndMillis[1] - before[1] });
+            });
+            return new GcSnapshot(rv);
+        }
+
+        long totalCount() {
+            return countAndMillisByCollector.values().stream().mapToLong(countAndMillis -> countAndMillis[0]).sum();
+        }
+
+        long totalMillis() {
+            return countAndMillisByCollector.values().stream().mapToLong(countAndMillis -> countAndMillis[1]).sum();
+        }
+
+        Map<String, Map<String, Long>> byCollector() {
+            Map<String, Map<String, Long>> rv = new LinkedHashMap<>();
+            countAndMillisByCollector.forEach((name, countAndMillis) ->
+                rv.put(name, Map.of("collections", countAndMillis[0], "millis", countAndMillis[1]))
+            );
+            return rv;
+        }
+
+    }
+
+}
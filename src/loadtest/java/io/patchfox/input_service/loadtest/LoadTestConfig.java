@@ -0,0 +1,83 @@
+package io.patchfox.input_service.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/*
+ * options for a load test run, read from --name=value arguments. everything that shapes the workload is derived from
+ * seed, so two runs with the same options offer the service exactly the same sequence of requests.
+ *
+ *   --rate              requests per second, on average. arrivals are poisson so there are bursts and lulls
+ *   --duration          how long to offer load for after warmup. ISO-8601 eg PT10M. hours for a soak
+ *   --warmup            load offered before measuring starts. not counted in the report
+ *   --mix               bundle sizes in packages and their relative weights, eg 10:60,1000:35,10000:5
+ *   --kafka-share       fraction of requests sent through the kafka request listener rather than HTTP
+ *   --datasources       number of distinct datasources events are spread over
+ *   --seed
+ *   --timeout           a request with no response after this long counts as an error
+ *   --report-interval   how often to print progress
+ *   --db-latency        median:p99 milliseconds added to every statement when postgres is stood in for
+ *   --kafka-latency     median:p99 milliseconds added to every record the service produces
+ *   --local-postgres    url of a postgres to use instead of the embedded one, eg the docker-compose one at
+ *                       jdbc:postgresql://0.0.0.0:54321/mrs_db. the embedded one is used unless this is given
+ */
+public record LoadTestConfig(
+    double rate,
+    Duration duration,
+    Duration warmup,
+    Map<Integer, Integer> mix,
+    double kafkaShare,
+    int datasources,
+    long seed,
+    Duration timeout,
+    Duration reportInterval,
+    LatencyModel.Spec dbLatency,
+    LatencyModel.Spec kafkaLatency,
+    String localPostgres
+) {
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (var arg : args) {
+            if ( !arg.startsWith("--") || !arg.contains("=") ) {
+                throw new IllegalArgumentException("expected --name=value but got: " + arg);
+            }
+            var split = arg.substring(2).split("=", 2);
+            options.put(split[0], split[1]);
+        }
+
+        var rv = new LoadTestConfig(
+            Double.parseDouble(options.getOrDefault("rate", "5")),
+            Duration.parse(options.getOrDefault("duration", "PT2M")),
+            Duration.parse(options.getOrDefault("warmup", "PT30S")),
+            parseMix(options.getOrDefault("mix", "10:60,1000:35,10000:5")),
+            Double.parseDouble(options.getOrDefault("kafka-share", "0.5")),
+            Integer.parseInt(options.getOrDefault("datasources", "20")),
+            Long.parseLong(options.getOrDefault("seed", "42")),
+            Duration.parse(options.getOrDefault("timeout", "PT60S")),
+            Duration.parse(options.getOrDefault("report-interval", "PT10S")),
+            LatencyModel.Spec.parse(options.getOrDefault("db-latency", "1:15")),
+            LatencyModel.Spec.parse(options.getOrDefault("kafka-latency", "2:20")),
+            options.get("local-postgres")
+        );
+
+        if (rv.rate <= 0) { throw new IllegalArgumentException("rate must be positive"); }
+        if (rv.kafkaShare < 0 || rv.kafkaShare > 1) { throw new IllegalArgumentException("kafka-share is 0 to 1"); }
+        if (rv.datasources < 1) { throw new IllegalArgumentException("need at least one datasource"); }
+        return rv;
+    }
+
+
+    private static Map<Integer, Integer> parseMix(String mix) {
+        Map<Integer, Integer> rv = new LinkedHashMap<>();
+        for (var entry : mix.split(",")) {
+            var split = entry.trim().split(":");
+            rv.put(Integer.parseInt(split[0]), Integer.parseInt(split[1]));
+        }
+        return rv;
+    }
+
+}
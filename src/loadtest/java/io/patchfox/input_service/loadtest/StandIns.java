@@ -0,0 +1,99 @@
+package io.patchfox.input_service.loadtest;
+
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * what the service talks to during a load test. kafka is always an in-process broker. postgres is an embedded instance
+ * unless --local-postgres names one to use instead - whatever happens to be running on the workstation never changes
+ * what a run is measured against.
+ */
+@Slf4j
+public class StandIns implements AutoCloseable {
+
+    // credentials application.properties uses for the docker-compose postgres. assumed for --local-postgres
+    private static final String LOCAL_POSTGRES_USERNAME = "mr_data";
+    private static final String LOCAL_POSTGRES_PASSWORD = "omnomdata";
+
+    private final EmbeddedKafkaKraftBroker kafkaBroker;
+
+    private final EmbeddedPostgres embeddedPostgres;
+
+    private final String jdbcUrl;
+
+    private final String jdbcUsername;
+
+    private final String jdbcPassword;
+
+    public StandIns(LoadTestConfig config, String... topics) throws IOException {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 10, topics);
+        kafkaBroker.afterPropertiesSet();
+
+        if (config.localPostgres() != null) {
+            // asked for by name so falling back to the embedded one would measure something other than what was meant
+            if ( !isReachable(config.localPostgres()) ) {
+                kafkaBroker.destroy();
+                throw new IllegalStateException("local postgres at " + config.localPostgres() + " isn't reachable");
+            }
+            log.info("using local postgres at {}", config.localPostgres());
+            embeddedPostgres = null;
+            jdbcUrl = config.localPostgres();
+            jdbcUsername = LOCAL_POSTGRES_USERNAME;
+            jdbcPassword = LOCAL_POSTGRES_PASSWORD;
+        } else {
+            log.info("starting an embedded postgres");
+            embeddedPostgres = EmbeddedPostgres.start();
+            jdbcUrl = embeddedPostgres.getJdbcUrl("postgres", "postgres");
+            jdbcUsername = "postgres";
+            jdbcPassword = "";
+        }
+    }
+
+
+    /**
+     *
+     * @return whether postgres is the embedded stand-in, which needs latency added to be realistic
+     */
+    public boolean isPostgresEmbedded() {
+        return embeddedPostgres != null;
+    }
+
+    public String getKafkaBootstrapServers() {
+        return kafkaBroker.getBrokersAsString();
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public String getJdbcUsername() {
+        return jdbcUsername;
+    }
+
+    public String getJdbcPassword() {
+        return jdbcPassword;
+    }
+
+    @Override
+    public void close() throws IOException {
+        kafkaBroker.destroy();
+        if (embeddedPostgres != null) { embeddedPostgres.close(); }
+    }
+
+
+    private static boolean isReachable(String jdbcUrl) {
+        try (var connection = DriverManager.getConnection(jdbcUrl, LOCAL_POSTGRES_USERNAME, LOCAL_POSTGRES_PASSWORD)) {
+            return connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+}
@@ -10,12 +10,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 import io.patchfox.input_service.components.EnvironmentComponent;
 import io.patchfox.input_service.controllers.RestInfoController;
 import io.patchfox.input_service.helpers.RestHelper;
+import io.patchfox.input_service.kafka.KafkaPublisher;
 import io.patchfox.input_service.repositories.DatasetRepository;
 import io.patchfox.package_utils.json.ApiRequest;
 
@@ -48,7 +48,7 @@ public class App {
     // leave this uncommented - it not only smoke tests kafka on boot, it prints a list of available resource signatures 
     // to the log.
     @Bean
-    public ApplicationRunner runner(KafkaTemplate<String, ApiRequest> template) {
+    public ApplicationRunner runner(KafkaPublisher publisher) {
 
         log.info("*!* SENDING TEST KAFKA MESSAGE *!*");
         var testMessage = ApiRequest.builder()
@@ -62,7 +62,7 @@ public class App {
                                     .build();
 
         return args -> {
-            template.send(env.getKafkaRequestTopicName(), testMessage);
+            publisher.sendRequest(env.getKafkaRequestTopicName(), testMessage.getTxid().toString(), testMessage);
         };
     }
 
@@ -0,0 +1,189 @@
+package io.patchfox.input_service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.ObservationFilter;
+import io.micrometer.observation.ObservationPredicate;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import io.micrometer.tracing.exporter.SpanExportingPredicate;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.jfr.JfrObservationHandler;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Tracing wiring that spring boot doesn't do for us. HTTP, Kafka send/receive and JDBC spans come from their own
+ * auto-configuration (see the TRACING section of application.properties) and spans go out over OTLP when
+ * "management.otlp.tracing.endpoint" is set. This adds the option of writing spans to a local file instead and keeps
+ * background DB chatter and scheduled housekeeping from turning into traces of their own - without taking away the 
+ * observations themselves, which metrics and JFR events hang off.
+ */
+@Configuration
+public class TracingConfig {
+
+    // span attribute every request's txid is recorded under 
+    public static final String TXID_ATTRIBUTE = "patchfox.txid";
+
+    // high cardinality key - so it ends up on spans but never on metrics - marking observations made under a 
+    // scheduled run. spans carrying it aren't exported
+    public static final String HOUSEKEEPING_KEY = "patchfox.housekeeping";
+
+    /**
+     * the db health probes run queries outside of any observation at all. on their own those are just thousands of 
+     * single span traces so we only trace queries that happen as part of something else.
+     * 
+     * @param observationRegistry
+     * @return
+     */
+    @Bean
+    ObservationPredicate skipUnparentedJdbcObservations(ObjectProvider<ObservationRegistry> observationRegistry) {
+        return (name, context) -> {
+            if ( !name.startsWith("jdbc.") ) { return true; }
+            return observationRegistry.getObject().getCurrentObservation() != null;
+        };
+    }
+
+
+    /**
+     * scheduled housekeeping (outbox relay, status curation, purges) is observed like anything else - that's what 
+     * feeds spring's scheduled task timer and the SchedulerTickEvents in flight recordings - but a trace per run, and 
+     * one per query in it, is noise nobody looks at. so every observation whose root is a scheduled run is marked 
+     * here and its span dropped at export by dropHousekeepingSpans(). filters run before handlers see the stop so the
+     * mark makes it onto the span.
+     * 
+     * @return
+     */
+    @Bean
+    ObservationFilter markHousekeepingObservations() {
+        return context -> {
+            String rootName = context.getName();
+            ObservationView parent = context.getParentObservation();
+            while (parent != null) {
+                rootName = parent.getContextView().getName();
+                parent = parent.getContextView().getParentObservation();
+            }
+            if (JfrObservationHandler.SCHEDULED_OBSERVATION_NAME.equals(rootName)) {
+                context.addHighCardinalityKeyValue(KeyValue.of(HOUSEKEEPING_KEY, "true"));
+            }
+            return context;
+        };
+    }
+
+
+    /**
+     * applies to every exporter, OTLP and the file one alike
+     * 
+     * @return
+     */
+    @Bean
+    SpanExportingPredicate dropHousekeepingSpans() {
+        return span -> !"true".equals(span.getTags().get(HOUSEKEEPING_KEY));
+    }
+
+
+    /**
+     * 
+     * @param env
+     * @return exporter writing one JSON object per span to the file named by "patchfox.tracing.file"
+     * @throws IOException
+     */
+    @Bean
+    @ConditionalOnExpression("!'${patchfox.tracing.file}'.isBlank()")
+    SpanExporter fileSpanExporter(EnvironmentComponent env) throws IOException {
+        return new FileSpanExporter(Path.of(env.getTracingFile()));
+    }
+
+
+    /*
+     * only ever called from the batch span processor's worker thread so there's no locking around the writer
+     */
+    @Slf4j
+    static class FileSpanExporter implements SpanExporter {
+
+        private final ObjectMapper mapper = new ObjectMapper();
+
+        private final BufferedWriter writer;
+
+        FileSpanExporter(Path path) throws IOException {
+            writer = Files.newBufferedWriter(
+                path, 
+                StandardCharsets.UTF_8, 
+                StandardOpenOption.CREATE, 
+                StandardOpenOption.APPEND
+            );
+            log.info("writing spans to {}", path);
+        }
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            try {
+                for (var span : spans) {
+                    writer.write(mapper.writeValueAsString(toMap(span)));
+                    writer.newLine();
+                }
+                writer.flush();
+                return CompletableResultCode.ofSuccess();
+            } catch (IOException e) {
+                log.warn("unable to write {} span(s) to file", spans.size(), e);
+                return CompletableResultCode.ofFailure();
+            }
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            // export() flushes every batch
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            try {
+                writer.close();
+                return CompletableResultCode.ofSuccess();
+            } catch (IOException e) {
+                return CompletableResultCode.ofFailure();
+            }
+        }
+
+        private static Map<String, Object> toMap(SpanData span) {
+            Map<String, Object> attributes = new HashMap<>();
+            span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+
+            Map<String, Object> rv = new LinkedHashMap<>();
+            rv.put("traceId", span.getTraceId());
+            rv.put("spanId", span.getSpanId());
+            rv.put("parentSpanId", span.getParentSpanId());
+            rv.put("name", span.getName());
+            rv.put("kind", span.getKind().toString());
+            rv.put("startEpochNanos", span.getStartEpochNanos());
+            rv.put("endEpochNanos", span.getEndEpochNanos());
+            rv.put("durationMicros", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1000);
+            rv.put("status", span.getStatus().getStatusCode().toString());
+            rv.put("attributes", attributes);
+            return rv;
+        }
+
+    }
+
+}
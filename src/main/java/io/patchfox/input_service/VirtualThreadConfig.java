@@ -0,0 +1,201 @@
+package io.patchfox.input_service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Wiring for "spring.threads.virtual.enabled". Spring boot moves tomcat, the kafka listener containers and the
+ * scheduler onto virtual threads by itself and KeyedOrderedExecutor / ReprocessService pick their threads off the same
+ * flag. What it doesn't do is stop thousands of virtual threads from all asking the connection pool for a connection
+ * at once. Platform threads were capped by their pool sizes, virtual ones aren't, so the cap now lives here: a fair
+ * semaphore in front of the DataSource sized to the pool. Callers queue on the semaphore in arrival order rather than
+ * spinning through hikari's handoff queue and anything that can't get a permit within the pool's connection timeout
+ * fails the same way an exhausted pool would.
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    /**
+     * static so it's registered before the DataSource is created. wraps whatever the DataSource is by then - the
+     * tracing proxy or the pool itself - and unwrap()/isWrapperFor() still reach the pool through the gate.
+     *
+     * @param meterRegistry
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(name = "patchfox.db.concurrency-gate.enabled", havingValue = "true")
+    static BeanPostProcessor databaseConcurrencyGatePostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if ( !(bean instanceof DataSource dataSource) || bean instanceof GatedDataSource ) { return bean; }
+                return new GatedDataSource(dataSource, meterRegistry);
+            }
+        };
+    }
+
+
+    /*
+     * a permit is taken in getConnection() and handed back when that connection is closed, so permits track
+     * connections checked out of the pool one for one. callers waiting here never reach the pool, so anything judging
+     * pool pressure by hikari's waiting count has to add getWaitingCount() - see HikariPoolHealthSignal
+     */
+    @Slf4j
+    public static class GatedDataSource extends DelegatingDataSource {
+
+        // used when the DataSource isn't a hikari pool and there's no pool size to copy
+        private static final int DEFAULT_PERMITS = 10;
+        private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+        private final Semaphore permits;
+
+        private final long timeoutMillis;
+
+        private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+        // resolved on first use. the DataSource is built well before the registry is
+        private volatile Timer waitTimer;
+
+        GatedDataSource(DataSource target, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+            super(target);
+            this.meterRegistryProvider = meterRegistryProvider;
+
+            var permitCount = DEFAULT_PERMITS;
+            var timeout = DEFAULT_TIMEOUT_MILLIS;
+            try {
+                if (target.isWrapperFor(HikariDataSource.class)) {
+                    var hikariDataSource = target.unwrap(HikariDataSource.class);
+                    permitCount = hikariDataSource.getMaximumPoolSize();
+                    timeout = hikariDataSource.getConnectionTimeout();
+                }
+            } catch (SQLException e) {
+                log.warn("unable to read pool size - gating at {} connections", DEFAULT_PERMITS, e);
+            }
+
+            permits = new Semaphore(permitCount, true);
+            timeoutMillis = timeout;
+            log.info("db concurrency gate allows {} connections, waiting at most {}ms", permitCount, timeoutMillis);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            return checkOut(super::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            return checkOut(() -> super.getConnection(username, password));
+        }
+
+
+        /**
+         *
+         * @return callers waiting for a connection permit
+         */
+        public int getWaitingCount() {
+            return permits.getQueueLength();
+        }
+
+
+        private void acquire() throws SQLException {
+            var startedAt = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("interrupted waiting for a db connection permit", e);
+            }
+
+            getWaitTimer().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            if ( !acquired ) {
+                throw new SQLTransientConnectionException(
+                    "no db connection permit within " + timeoutMillis + "ms - " + permits.getQueueLength() + " waiting"
+                );
+            }
+        }
+
+
+        /**
+         *
+         * @param connectionSupplier
+         * @return connection that hands its permit back when closed. the permit goes back straight away if the pool
+         *         couldn't give us a connection
+         * @throws SQLException
+         */
+        private Connection checkOut(ConnectionSupplier connectionSupplier) throws SQLException {
+            Connection connection;
+            try {
+                connection = connectionSupplier.get();
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+
+            var released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                }
+            );
+        }
+
+
+        private Timer getWaitTimer() {
+            if (waitTimer == null) {
+                var meterRegistry = meterRegistryProvider.getObject();
+                Gauge.builder("patchfox.db.gate.waiting", permits, Semaphore::getQueueLength)
+                     .description("threads waiting for a db connection permit")
+                     .register(meterRegistry);
+                waitTimer = Timer.builder("patchfox.db.gate.wait")
+                                 .description("time spent waiting for a db connection permit")
+                                 .register(meterRegistry);
+            }
+            return waitTimer;
+        }
+
+    }
+
+
+    @FunctionalInterface
+    interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+}
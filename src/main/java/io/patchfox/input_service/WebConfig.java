@@ -1,11 +1,17 @@
 package io.patchfox.input_service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.IngestRateLimiter;
+import io.patchfox.input_service.controllers.InputController;
 import io.patchfox.input_service.interceptors.ErrorViewInterceptor;
+import io.patchfox.input_service.interceptors.RateLimitInterceptor;
 import io.patchfox.input_service.interceptors.RequestEnrichmentInterceptor;
 
 
@@ -13,9 +19,21 @@ import io.patchfox.input_service.interceptors.RequestEnrichmentInterceptor;
 @EnableWebMvc
 public class WebConfig implements WebMvcConfigurer {
 
+	@Autowired
+	IngestRateLimiter ingestRateLimiter;
+
+	@Autowired
+	EnvironmentComponent env;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
 	@Override
 	public void addInterceptors(InterceptorRegistry registry) {
 		registry.addInterceptor(new RequestEnrichmentInterceptor());
+		// after enrichment so a throttled request's response still carries its txid 
+		registry.addInterceptor(new RateLimitInterceptor(ingestRateLimiter, env, meterRegistry))
+		        .addPathPatterns(InputController.INPUT_GIT_PATH);
 		registry.addInterceptor(new ErrorViewInterceptor()).addPathPatterns("/error");
 	}
 }
@@ -45,7 +45,8 @@ public class ExceptionControllerAdvice extends ResponseEntityExceptionHandler {
     public ResponseEntity<ApiResponse> handleHttpException(HttpStatusCodeException ex, WebRequest request) {
         var httpStatusCode = ex.getStatusCode();
         var apiResponse = getApiResponseWithRequestEnrichments(httpStatusCode, request);
-        return new ResponseEntity<>(apiResponse, httpStatusCode);
+        // passes along things like Retry-After 
+        return new ResponseEntity<>(apiResponse, ex.getResponseHeaders(), httpStatusCode);
     }
 
 
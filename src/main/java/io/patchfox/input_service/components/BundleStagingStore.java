@@ -0,0 +1,310 @@
+package io.patchfox.input_service.components;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.patchfox.input_service.helpers.StagedMultipartFile;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Claim-check store for event bundles. Rather than pushing a multi-megabyte zip through the broker inline, a producer
+ * drops the bundle here and sends an ApiRequest whose data map carries the reference and the sha-256 digest of the
+ * bundle. The staging directory can be local or a volume shared with the producers.
+ */
+@Slf4j
+@Component
+public class BundleStagingStore {
+
+    // ApiRequest data map keys for a claim-check request
+    public static final String EVENT_FILE_REF_KEY = "eventFileRef";
+    public static final String EVENT_FILE_SHA256_KEY = "eventFileSha256";
+    public static final String EVENT_FILE_NAME_KEY = "eventFileName";
+
+    // refs are generated by stage() but producers on a shared volume may mint their own. either way they must be a
+    // plain file name - no separators, no "..", nothing that can walk out of the staging directory.
+    private static final String VALID_REF_REGEX = "^[a-zA-Z0-9][-a-zA-Z0-9._]{0,254}$";
+
+    @Autowired
+    EnvironmentComponent env;
+
+    // bundles whose ingest failed are kept here, named for the event they belong to, so they can be reprocessed 
+    // without the caller uploading them again. see retain()
+    private static final String RETAINED_DIR_NAME = "retained";
+    private static final String RETAINED_BUNDLE_SUFFIX = ".zip";
+    private static final String RETAINED_PURL_SUFFIX = ".purl";
+
+    private Path stagingDirPath;
+
+    private Path retainedDirPath;
+
+    @PostConstruct
+    void init() throws IOException {
+        stagingDirPath = Path.of(env.getStagingDir()).toAbsolutePath().normalize();
+        retainedDirPath = stagingDirPath.resolve(RETAINED_DIR_NAME);
+        Files.createDirectories(retainedDirPath);
+        log.info("bundle staging directory is: {}", stagingDirPath);
+    }
+
+
+    /**
+     * copies inputStream into the staging store
+     *
+     * @param inputStream
+     * @return reference and digest a claim-check request needs to point at the staged bundle
+     * @throws IOException
+     */
+    public StagedBundle stage(InputStream inputStream) throws IOException {
+        var ref = UUID.randomUUID() + ".zip";
+        var digest = newDigest();
+        var path = stagingDirPath.resolve(ref);
+        try (var digestInputStream = new DigestInputStream(inputStream, digest)) {
+            Files.copy(digestInputStream, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return new StagedBundle(ref, HexFormat.of().formatHex(digest.digest()), Files.size(path));
+    }
+
+
+    /**
+     * resolves a staged bundle and checks it against the digest the producer sent. the bundle is streamed through
+     * the digest rather than read into memory.
+     *
+     * @param ref
+     * @param expectedSha256
+     * @param originalFilename
+     * @return
+     * @throws IllegalArgumentException if the ref is malformed, doesn't exist, is too big, or fails the digest check
+     * @throws IOException
+     */
+    public StagedMultipartFile open(
+        String ref,
+        String expectedSha256,
+        String originalFilename
+    ) throws IllegalArgumentException, IOException {
+        var path = resolve(ref);
+        if ( !Files.isRegularFile(path) ) {
+            log.error("staged bundle {} does not exist", ref);
+            throw new IllegalArgumentException();
+        }
+
+        var maxBundleSize = env.getMaxBundleSize().toBytes();
+        if (Files.size(path) > maxBundleSize) {
+            log.error("staged bundle {} is larger than the max allowed size of {} bytes", ref, maxBundleSize);
+            throw new IllegalArgumentException();
+        }
+
+        var digest = newDigest();
+        try (var digestInputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+            digestInputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        var actualSha256 = HexFormat.of().formatHex(digest.digest());
+        if (expectedSha256 == null || !expectedSha256.equalsIgnoreCase(actualSha256)) {
+            log.error("staged bundle {} failed digest check. expected: {} actual: {}", ref, expectedSha256, actualSha256);
+            throw new IllegalArgumentException();
+        }
+
+        var filename = (originalFilename == null || originalFilename.isBlank()) ? ref : originalFilename;
+        return new StagedMultipartFile(path, ref, filename);
+    }
+
+
+    /**
+     * removes a staged bundle. safe to call on a ref that is already gone.
+     *
+     * @param ref
+     */
+    public void delete(String ref) {
+        try {
+            Files.deleteIfExists(resolve(ref));
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("unable to remove staged bundle {}", ref, e);
+        }
+    }
+
+
+    /**
+     * keeps a copy of the bundle for eventPurl so it can be reprocessed later. replaces any bundle already retained
+     * for the same event.
+     *
+     * @param eventPurl
+     * @param inputStream
+     * @throws IOException
+     */
+    public void retain(String eventPurl, InputStream inputStream) throws IOException {
+        var name = getRetainedName(eventPurl);
+        // bundle first, then the purl file - listRetained() only sees a bundle once both are there. the bundle is 
+        // written to the side and moved into place because a reprocess that fails again retains the very file it's 
+        // reading from
+        var tmpPath = retainedDirPath.resolve(name + ".tmp");
+        try (inputStream) {
+            Files.copy(inputStream, tmpPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(
+            tmpPath, 
+            retainedDirPath.resolve(name + RETAINED_BUNDLE_SUFFIX), 
+            StandardCopyOption.REPLACE_EXISTING, 
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        Files.writeString(retainedDirPath.resolve(name + RETAINED_PURL_SUFFIX), eventPurl);
+        log.info("retained bundle for event {}", eventPurl);
+    }
+
+
+    /**
+     *
+     * @return total size of the retained bundles
+     * @throws IOException
+     */
+    public long getRetainedBytes() throws IOException {
+        var rv = 0L;
+        try (var paths = Files.list(retainedDirPath)) {
+            for (var path : paths.filter(p -> p.toString().endsWith(RETAINED_BUNDLE_SUFFIX)).toList()) {
+                rv += Files.size(path);
+            }
+        }
+        return rv;
+    }
+
+
+    /**
+     *
+     * @return purls of every event that has a retained bundle
+     * @throws IOException
+     */
+    public List<String> listRetained() throws IOException {
+        List<String> rv = new ArrayList<>();
+        try (var paths = Files.list(retainedDirPath)) {
+            for (var path : paths.filter(p -> p.toString().endsWith(RETAINED_PURL_SUFFIX)).toList()) {
+                rv.add(Files.readString(path));
+            }
+        }
+        return rv;
+    }
+
+
+    /**
+     *
+     * @param eventPurl
+     * @return the retained bundle for eventPurl, if there is one
+     */
+    public Optional<StagedMultipartFile> openRetained(String eventPurl) {
+        var name = getRetainedName(eventPurl);
+        var path = retainedDirPath.resolve(name + RETAINED_BUNDLE_SUFFIX);
+        if ( !Files.isRegularFile(path) ) { return Optional.empty(); }
+        return Optional.of(new StagedMultipartFile(path, name, name + RETAINED_BUNDLE_SUFFIX));
+    }
+
+
+    /**
+     * removes the retained bundle for eventPurl. safe to call when there isn't one.
+     *
+     * @param eventPurl
+     */
+    public void deleteRetained(String eventPurl) {
+        var name = getRetainedName(eventPurl);
+        try {
+            Files.deleteIfExists(retainedDirPath.resolve(name + RETAINED_PURL_SUFFIX));
+            Files.deleteIfExists(retainedDirPath.resolve(name + RETAINED_BUNDLE_SUFFIX));
+        } catch (IOException e) {
+            log.warn("unable to remove retained bundle for event {}", eventPurl, e);
+        }
+    }
+
+
+    /**
+     * removes retained bundles last written before olderThan
+     *
+     * @param olderThan
+     * @return number of bundles removed
+     * @throws IOException
+     */
+    public int purgeRetained(Instant olderThan) throws IOException {
+        var purgedCount = 0;
+        try (var paths = Files.list(retainedDirPath)) {
+            for (var path : paths.filter(p -> p.toString().endsWith(RETAINED_PURL_SUFFIX)).toList()) {
+                if (Files.getLastModifiedTime(path).toInstant().isBefore(olderThan)) {
+                    deleteRetained(Files.readString(path));
+                    purgedCount++;
+                }
+            }
+        }
+        return purgedCount;
+    }
+
+
+    /**
+     * removes staged bundles written before olderThan. a bundle normally goes as soon as its request is answered -
+     * these are ones whose request never arrived or was shed and never re-sent.
+     *
+     * @param olderThan
+     * @return number of bundles removed
+     * @throws IOException
+     */
+    public int purgeStaged(Instant olderThan) throws IOException {
+        var purgedCount = 0;
+        try (var paths = Files.list(stagingDirPath)) {
+            for (var path : paths.filter(Files::isRegularFile).toList()) {
+                if (Files.getLastModifiedTime(path).toInstant().isBefore(olderThan)) {
+                    Files.deleteIfExists(path);
+                    purgedCount++;
+                }
+            }
+        }
+        return purgedCount;
+    }
+
+
+    // event purls are full of characters that don't belong in file names 
+    private static String getRetainedName(String eventPurl) {
+        var digest = newDigest();
+        return HexFormat.of().formatHex(digest.digest(eventPurl.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    private Path resolve(String ref) throws IllegalArgumentException {
+        if (ref == null || !ref.matches(VALID_REF_REGEX)) {
+            log.error("refusing malformed staged bundle reference: {}", ref);
+            throw new IllegalArgumentException();
+        }
+
+        var path = stagingDirPath.resolve(ref).normalize();
+        if ( !path.getParent().equals(stagingDirPath) ) {
+            log.error("refusing staged bundle reference outside the staging directory: {}", ref);
+            throw new IllegalArgumentException();
+        }
+        return path;
+    }
+
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    public record StagedBundle(String ref, String sha256, long size) {}
+
+}
@@ -0,0 +1,27 @@
+package io.patchfox.input_service.components;
+
+
+/*
+ * something that can tell whether the database is keeping up. signals carry their own pause and resume thresholds - 
+ * a signal should only report recovered once it's comfortably back under the level that made it report degraded so 
+ * consumers of the signal don't flap. every bean implementing this is picked up by DatabaseBackpressureController.
+ */
+public interface DatabaseHealthSignal {
+
+    /**
+     * takes a fresh reading. called from a single scheduler thread so implementations needn't be thread safe.
+     * 
+     * @return
+     */
+    Reading read();
+
+
+    /**
+     * 
+     * @param degraded true if the db is struggling badly enough that we should stop taking on new work
+     * @param recovered true if the db is healthy enough to take on new work again
+     * @param detail human readable description of the reading for the logs
+     */
+    record Reading(boolean degraded, boolean recovered, String detail) {}
+
+}
@@ -1,7 +1,10 @@
 package io.patchfox.input_service.components;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Getter;
 
@@ -39,7 +42,187 @@ public class EnvironmentComponent {
     @Value("${patchfox.feature.mq-controller.valid-topics}")
     private String validTopicsAsString;
 
+    @Value("${patchfox.feature.jfr-controller}")
+    private boolean isJfrControllerEnabled;
+
+    @Value("${patchfox.feature.jfr-controller.secret}")
+    private String jfrControllerSecret;
+
+    @Value("${patchfox.jfr.max-duration-seconds}")
+    private long jfrMaxDurationSeconds;
+
+    @Value("${patchfox.jfr.settings}")
+    private String jfrSettings;
+
     @Value("${patchfox.expected.domain}")
     private String expectedDomain;
 
+    //
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean isVirtualThreadsEnabled;
+
+    @Value("${patchfox.ingest.ordered-executor.threads}")
+    private int orderedExecutorThreads;
+
+    @Value("${patchfox.ingest.reorder-window-seconds}")
+    private long reorderWindowSeconds;
+
+    @Value("${patchfox.ingest.staging.dir}")
+    private String stagingDir;
+
+    @Value("${patchfox.kafka.envelope.format}")
+    private String envelopeFormat;
+
+    @Value("${patchfox.kafka.publisher.max-in-flight}")
+    private int publisherMaxInFlight;
+
+    @Value("${patchfox.kafka.publisher.acquire-timeout-ms}")
+    private long publisherAcquireTimeoutMs;
+
+    @Value("${patchfox.kafka.request.dedup.ttl-minutes}")
+    private long dedupTtlMinutes;
+
+    @Value("${patchfox.kafka.request.dedup.cache-size}")
+    private int dedupCacheSize;
+
+    @Value("${patchfox.kafka.listener.autoscale.enabled}")
+    private boolean listenerAutoscaleEnabled;
+
+    @Value("${patchfox.kafka.listener.autoscale.min-concurrency}")
+    private int listenerMinConcurrency;
+
+    @Value("${patchfox.kafka.listener.autoscale.max-concurrency}")
+    private int listenerMaxConcurrency;
+
+    @Value("${patchfox.kafka.listener.autoscale.target-drain-seconds}")
+    private long listenerTargetDrainSeconds;
+
+    @Value("${patchfox.kafka.listener.autoscale.admin-timeout-ms}")
+    private long listenerAdminTimeoutMs;
+
+    @Value("${patchfox.kafka.listener.autoscale.interval-seconds}")
+    private long listenerAutoscaleIntervalSeconds;
+
+    @Value("${patchfox.db-backpressure.check-interval-ms}")
+    private long backpressureCheckIntervalMs;
+
+    @Value("${patchfox.db-backpressure.pool.pause-waiting-threads}")
+    private int backpressurePoolPauseWaitingThreads;
+
+    @Value("${patchfox.db-backpressure.pool.resume-waiting-threads}")
+    private int backpressurePoolResumeWaitingThreads;
+
+    @Value("${patchfox.db-backpressure.latency.pause-ms}")
+    private long backpressureLatencyPauseMs;
+
+    @Value("${patchfox.db-backpressure.latency.resume-ms}")
+    private long backpressureLatencyResumeMs;
+
+    @Value("${patchfox.outbox.topic}")
+    private String outboxTopicName;
+
+    @Value("${patchfox.outbox.batch-size}")
+    private int outboxBatchSize;
+
+    @Value("${patchfox.outbox.send-timeout-ms}")
+    private long outboxSendTimeoutMs;
+
+    @Value("${patchfox.outbox.retention-hours}")
+    private long outboxRetentionHours;
+
+    @Value("${patchfox.event-stream.buffer-size}")
+    private int eventStreamBufferSize;
+
+    @Value("${patchfox.event-stream.heartbeat-seconds}")
+    private long eventStreamHeartbeatSeconds;
+
+    @Value("${patchfox.ingest.status-cache.size}")
+    private int ingestStatusCacheSize;
+
+    @Value("${patchfox.ingest.status-cache.fresh-seconds}")
+    private long ingestStatusCacheFreshSeconds;
+
+    @Value("${patchfox.ingest.staging.retain-failed-hours}")
+    private long retainFailedBundleHours;
+
+    @Value("${patchfox.ingest.staging.retain-failed-max-size}")
+    private DataSize retainFailedMaxSize;
+
+    @Value("${patchfox.ingest.staging.unclaimed-hours}")
+    private long unclaimedStagedBundleHours;
+
+    @Value("${patchfox.reprocess.parallelism}")
+    private int reprocessParallelism;
+
+    @Value("${patchfox.reprocess.default-limit}")
+    private int reprocessDefaultLimit;
+
+    @Value("${patchfox.ingest.latency.slos}")
+    private Duration[] ingestLatencySlos;
+
+    @Value("${patchfox.ingest.latency.retention-days}")
+    private long ingestLatencyRetentionDays;
+
+    @Value("${patchfox.ingest.latency.default-window-hours}")
+    private int ingestLatencyDefaultWindowHours;
+
+    @Value("${patchfox.ingest.latency.default-limit}")
+    private int ingestLatencyDefaultLimit;
+
+    @Value("${patchfox.tracing.file}")
+    private String tracingFile;
+
+    // claim-check bundles are held to the same limit as HTTP uploads 
+    @Value("${spring.servlet.multipart.max-file-size}")
+    private DataSize maxBundleSize;
+
+    @Value("${patchfox.ingest.admission.enabled}")
+    private boolean isAdmissionEnabled;
+
+    @Value("${patchfox.ingest.admission.budget}")
+    private DataSize admissionBudget;
+
+    @Value("${patchfox.ingest.admission.heap-fraction}")
+    private double admissionHeapFraction;
+
+    @Value("${patchfox.ingest.admission.bundle-byte-multiplier}")
+    private double admissionBundleByteMultiplier;
+
+    @Value("${patchfox.ingest.admission.entry-bytes}")
+    private DataSize admissionEntryBytes;
+
+    @Value("${patchfox.ingest.admission.max-queued}")
+    private int admissionMaxQueued;
+
+    @Value("${patchfox.ingest.admission.max-wait-seconds}")
+    private long admissionMaxWaitSeconds;
+
+    @Value("${patchfox.ingest.rate-limit.domain.requests-per-second}")
+    private double rateLimitDomainRequestsPerSecond;
+
+    @Value("${patchfox.ingest.rate-limit.domain.request-burst}")
+    private double rateLimitDomainRequestBurst;
+
+    @Value("${patchfox.ingest.rate-limit.domain.bytes-per-second}")
+    private DataSize rateLimitDomainBytesPerSecond;
+
+    @Value("${patchfox.ingest.rate-limit.domain.byte-burst}")
+    private DataSize rateLimitDomainByteBurst;
+
+    @Value("${patchfox.ingest.rate-limit.datasource.requests-per-second}")
+    private double rateLimitDatasourceRequestsPerSecond;
+
+    @Value("${patchfox.ingest.rate-limit.datasource.request-burst}")
+    private double rateLimitDatasourceRequestBurst;
+
+    @Value("${patchfox.ingest.rate-limit.datasource.bytes-per-second}")
+    private DataSize rateLimitDatasourceBytesPerSecond;
+
+    @Value("${patchfox.ingest.rate-limit.datasource.byte-burst}")
+    private DataSize rateLimitDatasourceByteBurst;
+
+    @Value("${patchfox.ingest.rate-limit.max-tracked-keys}")
+    private int rateLimitMaxTrackedKeys;
+
 }
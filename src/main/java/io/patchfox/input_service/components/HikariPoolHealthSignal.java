@@ -0,0 +1,67 @@
+package io.patchfox.input_service.components;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.patchfox.input_service.VirtualThreadConfig.GatedDataSource;
+
+
+/*
+ * reports degraded when callers are queueing for a pooled connection, either in the pool itself or at the db 
+ * concurrency gate in front of it - a sign that the queries holding the connections we already have aren't finishing
+ * fast enough.
+ */
+@Component
+public class HikariPoolHealthSignal implements DatabaseHealthSignal {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Override
+    public Reading read() {
+        // the pool sits behind the jdbc tracing proxy so we have to unwrap it rather than cast
+        HikariDataSource hikariDataSource;
+        try {
+            if ( !dataSource.isWrapperFor(HikariDataSource.class) ) {
+                return new Reading(false, true, "not a hikari pool");
+            }
+            hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException e) {
+            return new Reading(false, true, "unable to unwrap pool: " + e.getMessage());
+        }
+
+        var pool = hikariDataSource.getHikariPoolMXBean();
+        if (pool == null) { return new Reading(false, true, "hikari pool not started"); }
+
+        // with the db concurrency gate on, callers queue on the gate before they get to the pool and hikari's own 
+        // count stays near 0 - so theirs counts too
+        var gateWaiting = getGateWaitingCount();
+        var waiting = pool.getThreadsAwaitingConnection() + gateWaiting;
+        return new Reading(
+            waiting >= env.getBackpressurePoolPauseWaitingThreads(),
+            waiting <= env.getBackpressurePoolResumeWaitingThreads(),
+            "pool active: " + pool.getActiveConnections() + "/" + pool.getTotalConnections() 
+                + " waiting: " + waiting + " (" + gateWaiting + " at the gate)"
+        );
+    }
+
+
+    private int getGateWaitingCount() {
+        try {
+            if ( !dataSource.isWrapperFor(GatedDataSource.class) ) { return 0; }
+            return dataSource.unwrap(GatedDataSource.class).getWaitingCount();
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,289 @@
+package io.patchfox.input_service.components;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Keeps concurrent uploads from collectively running the heap out. An upload in flight holds its multipart buffer, the
+ * extracted DataFiles, the PackageWrapper graph built from them and that graph serialized to JSON all at once, and a
+ * handful of big SBOMs arriving together is enough to OOM the pod. Each upload is charged an estimate of that cost -
+ * worked out from the bundle's size and how many entries its zip directory lists - against a shared budget. Uploads
+ * that don't fit wait their turn in arrival order. Once the wait queue is full, or an upload has waited too long, it's
+ * turned away with a retry-after hint rather than being let in to slow everyone else down.
+ */
+@Slf4j
+@Component
+public class IngestAdmissionController {
+
+    // end of central directory record - fixed 22 bytes followed by a comment of up to 64KB
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_LENGTH = 22;
+    private static final int EOCD_MAX_COMMENT_LENGTH = 0xFFFF;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    // uploads waiting to be admitted, oldest first. only the head is ever admitted so a big upload can't be starved by
+    // a stream of small ones slipping past it
+    private final Deque<Object> waiting = new ArrayDeque<>();
+
+    private long budgetBytes;
+
+    private long inUseBytes;
+
+    private int admittedCount;
+
+    // moving average of how long admitted uploads hold their share of the budget. drives the retry-after hint
+    private double averageHoldMillis;
+
+    private Timer waitTimer;
+
+    @PostConstruct
+    void init() {
+        budgetBytes = (env.getAdmissionBudget().toBytes() > 0)
+            ? env.getAdmissionBudget().toBytes()
+            : (long) (Runtime.getRuntime().maxMemory() * env.getAdmissionHeapFraction());
+        log.info("ingest admission budget is {}MB", budgetBytes / (1024 * 1024));
+
+        Gauge.builder("patchfox.ingest.admission.in-use", this, IngestAdmissionController::getInUseBytes)
+             .description("estimated bytes held by admitted uploads")
+             .baseUnit("bytes")
+             .register(meterRegistry);
+        Gauge.builder("patchfox.ingest.admission.queued", this, IngestAdmissionController::getQueuedCount)
+             .description("uploads waiting to be admitted")
+             .register(meterRegistry);
+        waitTimer = Timer.builder("patchfox.ingest.admission.wait")
+                         .description("time uploads spent waiting to be admitted")
+                         .register(meterRegistry);
+    }
+
+
+    /**
+     * charges bundle's estimated cost against the budget, waiting if need be. close the returned ticket once the
+     * upload is done with to hand its share back.
+     *
+     * @param bundle
+     * @return ticket saying whether the upload was admitted and, if not, how long the caller should wait before trying
+     *         again
+     */
+    public Ticket admit(MultipartFile bundle) {
+        if ( !env.isAdmissionEnabled() ) { return new Ticket(true, false, 0, 0); }
+
+        var cost = Math.min(estimateCost(bundle), budgetBytes);
+        var startedAt = System.nanoTime();
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && inUseBytes + cost <= budgetBytes) { return charge(cost, startedAt); }
+            if (waiting.size() >= env.getAdmissionMaxQueued()) { return reject("queue-full", startedAt); }
+
+            var self = new Object();
+            waiting.addLast(self);
+            try {
+                var remainingNanos = TimeUnit.SECONDS.toNanos(env.getAdmissionMaxWaitSeconds());
+                while (waiting.peekFirst() != self || inUseBytes + cost > budgetBytes) {
+                    if (remainingNanos <= 0) { return reject("timeout", startedAt); }
+                    remainingNanos = released.awaitNanos(remainingNanos);
+                }
+                return charge(cost, startedAt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return reject("interrupted", startedAt);
+            } finally {
+                // whoever is next in line may fit now
+                waiting.remove(self);
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     *
+     * @param bundle
+     * @return estimated peak heap an upload of bundle costs while it's being ingested
+     */
+    long estimateCost(MultipartFile bundle) {
+        var bundleBytes = bundle.getSize();
+        return (long) (bundleBytes * env.getAdmissionBundleByteMultiplier())
+            + countZipEntries(bundle) * env.getAdmissionEntryBytes().toBytes();
+    }
+
+
+    /**
+     * reads the entry count out of the zip's end of central directory record, which is in the last 64KB of the file.
+     * nothing is decompressed and for uploads spooled to disk the rest of the file is skipped rather than read.
+     *
+     * @param bundle
+     * @return number of entries the zip says it holds. 0 if that can't be worked out - the upload is charged by size
+     *         alone and ingest decides whether it's a valid bundle
+     */
+    static long countZipEntries(MultipartFile bundle) {
+        var size = bundle.getSize();
+        if (size < EOCD_LENGTH) { return 0; }
+
+        var tailLength = (int) Math.min(size, EOCD_LENGTH + EOCD_MAX_COMMENT_LENGTH);
+        byte[] tail;
+        try (InputStream inputStream = bundle.getInputStream()) {
+            inputStream.skipNBytes(size - tailLength);
+            tail = inputStream.readNBytes(tailLength);
+        } catch (IOException e) {
+            log.debug("unable to read zip directory of {}", bundle.getOriginalFilename(), e);
+            return 0;
+        }
+
+        // the record is the last thing in the file apart from its comment so search backwards for its signature
+        for (var i = tail.length - EOCD_LENGTH; i >= 0; i--) {
+            if (readInt(tail, i) == EOCD_SIGNATURE) {
+                // total entries in the central directory. 0xFFFF means the real count is in a zip64 record -
+                // that's more entries than any bundle we'd accept so charging the maximum here is close enough
+                return readShort(tail, i + 10);
+            }
+        }
+        return 0;
+    }
+
+
+    public long getInUseBytes() {
+        lock.lock();
+        try {
+            return inUseBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // caller holds lock
+    private Ticket charge(long cost, long startedAt) {
+        inUseBytes += cost;
+        admittedCount++;
+        waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("patchfox.ingest.admission.outcomes", "outcome", "admitted").increment();
+        return new Ticket(true, true, cost, 0);
+    }
+
+    // caller holds lock
+    private Ticket reject(String reason, long startedAt) {
+        waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("patchfox.ingest.admission.outcomes", "outcome", "rejected", "reason", reason)
+                     .increment();
+
+        // roughly how long until everything ahead of the caller has been through, assuming admitted uploads keep
+        // finishing at their usual pace
+        var perUploadMillis = averageHoldMillis / Math.max(admittedCount, 1);
+        var retryAfterSeconds = (long) Math.ceil(perUploadMillis * (waiting.size() + 1) / 1000);
+        retryAfterSeconds = Math.max(1, Math.min(retryAfterSeconds, env.getAdmissionMaxWaitSeconds()));
+        log.warn(
+            "turned away upload ({}) - {}MB of {}MB in use by {} upload(s), {} waiting. retry after {}s",
+            reason,
+            inUseBytes / (1024 * 1024),
+            budgetBytes / (1024 * 1024),
+            admittedCount,
+            waiting.size(),
+            retryAfterSeconds
+        );
+        return new Ticket(false, false, 0, retryAfterSeconds);
+    }
+
+    private void release(long cost, long heldNanos) {
+        lock.lock();
+        try {
+            inUseBytes -= cost;
+            admittedCount--;
+            var heldMillis = TimeUnit.NANOSECONDS.toMillis(heldNanos);
+            averageHoldMillis = (averageHoldMillis == 0) ? heldMillis : (0.8 * averageHoldMillis) + (0.2 * heldMillis);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF)
+            | (bytes[offset + 1] & 0xFF) << 8
+            | (bytes[offset + 2] & 0xFF) << 16
+            | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+
+    /*
+     * one upload's claim on the budget. closing it more than once is harmless
+     */
+    public class Ticket implements AutoCloseable {
+
+        private final boolean admitted;
+
+        // false when admission control is off and nothing was taken from the budget
+        private final boolean charged;
+
+        private final long cost;
+
+        private final long retryAfterSeconds;
+
+        private final long admittedAt = System.nanoTime();
+
+        private boolean closed;
+
+        private Ticket(boolean admitted, boolean charged, long cost, long retryAfterSeconds) {
+            this.admitted = admitted;
+            this.charged = charged;
+            this.cost = cost;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public boolean isAdmitted() {
+            return admitted;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        @Override
+        public void close() {
+            if (closed || !charged) { return; }
+            closed = true;
+            release(cost, System.nanoTime() - admittedAt);
+        }
+
+    }
+
+}
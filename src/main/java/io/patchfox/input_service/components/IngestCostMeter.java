@@ -0,0 +1,118 @@
+package io.patchfox.input_service.components;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * What an ingest costs in heap allocation and CPU, read off the per-thread counters the JVM already keeps. Counters
+ * only ever cover the thread reading them so a request's cost is the sum over every thread that worked on it - see 
+ * InputService.handleGitEvent(). Threads the JVM can't account for (ie - virtual threads for CPU time) count as 0.
+ */
+@Slf4j
+@Component
+public class IngestCostMeter {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final com.sun.management.ThreadMXBean threadMXBean = 
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @PostConstruct
+    void init() {
+        if (threadMXBean.isThreadAllocatedMemorySupported() && !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        if (threadMXBean.isThreadCpuTimeSupported() && !threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        log.info(
+            "thread allocation accounting supported: {} thread cpu accounting supported: {}",
+            threadMXBean.isThreadAllocatedMemorySupported(),
+            threadMXBean.isThreadCpuTimeSupported()
+        );
+    }
+
+
+    /**
+     *
+     * @return the current thread's counters. hand to since() on the same thread once the work is done
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(
+            Thread.currentThread().threadId(),
+            threadMXBean.getCurrentThreadAllocatedBytes(),
+            threadMXBean.getCurrentThreadCpuTime()
+        );
+    }
+
+
+    /**
+     *
+     * @param start snapshot taken earlier on the current thread
+     * @return what the current thread has allocated and spent on CPU since start
+     */
+    public Cost since(Snapshot start) {
+        if (start.threadId() != Thread.currentThread().threadId()) {
+            throw new IllegalStateException("snapshot was taken on a different thread");
+        }
+        var now = snapshot();
+        return new Cost(
+            getDelta(start.allocatedBytes(), now.allocatedBytes()), 
+            getDelta(start.cpuNanos(), now.cpuNanos())
+        );
+    }
+
+
+    /**
+     *
+     * @param datasourceType
+     * @param cost
+     */
+    public void record(String datasourceType, Cost cost) {
+        DistributionSummary.builder("patchfox.ingest.allocated")
+                           .description("heap allocated ingesting one event")
+                           .baseUnit("bytes")
+                           .tag("datasource_type", datasourceType)
+                           .publishPercentileHistogram()
+                           .register(meterRegistry)
+                           .record(cost.allocatedBytes());
+
+        Timer.builder("patchfox.ingest.cpu")
+             .description("cpu time spent ingesting one event")
+             .tag("datasource_type", datasourceType)
+             .publishPercentileHistogram()
+             .register(meterRegistry)
+             .record(cost.cpuNanos(), TimeUnit.NANOSECONDS);
+    }
+
+
+    // counters read -1 when unsupported or disabled
+    private static long getDelta(long start, long end) {
+        return (start < 0 || end < 0) ? 0 : Math.max(0, end - start);
+    }
+
+
+    public record Snapshot(long threadId, long allocatedBytes, long cpuNanos) {}
+
+    public record Cost(long allocatedBytes, long cpuNanos) {
+
+        public static final Cost NONE = new Cost(0, 0);
+
+        public Cost plus(Cost other) {
+            return new Cost(allocatedBytes + other.allocatedBytes(), cpuNanos + other.cpuNanos());
+        }
+
+    }
+
+}
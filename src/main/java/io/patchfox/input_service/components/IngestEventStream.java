@@ -0,0 +1,141 @@
+package io.patchfox.input_service.components;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+
+
+/*
+ * Fixed-size ring buffer of recent ingest notifications - events being accepted and datasources/datasets changing
+ * status. Writers never wait on readers: publishing is an array store under a lock held for nanoseconds, and a reader
+ * that falls more than a buffer's length behind simply loses the oldest entries. Every entry gets a sequence number
+ * which readers use as their cursor.
+ */
+@Component
+public class IngestEventStream {
+
+    public enum EventType { EVENT_ACCEPTED, DATASOURCE_STATUS, DATASET_STATUS }
+
+    @Autowired
+    EnvironmentComponent env;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+
+    private StreamEvent[] buffer;
+
+    // sequence number the next published entry gets. entries run from 1 so a cursor of 0 means "from the start"
+    private long nextSequence = 1;
+
+    @PostConstruct
+    void init() {
+        buffer = new StreamEvent[env.getEventStreamBufferSize()];
+    }
+
+
+    /**
+     * adds an entry to the stream. when called inside a transaction the entry is only added once that transaction
+     * commits so nobody is told about a change that gets rolled back.
+     *
+     * @param type
+     * @param domain
+     * @param key datasource purl or dataset name
+     * @param status
+     * @param txid
+     */
+    public void publish(EventType type, String domain, String key, String status, UUID txid) {
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            append(type, domain, key, status, txid);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(type, domain, key, status, txid);
+            }
+        });
+    }
+
+
+    /**
+     * waits up to timeout for entries newer than cursor
+     *
+     * @param cursor sequence number of the last entry the caller has seen
+     * @param timeout
+     * @param unit
+     * @return entries after cursor, oldest first. empty if nothing turned up within the timeout. if the caller has
+     *         fallen so far behind that entries were overwritten, the result starts at the oldest one still held
+     * @throws InterruptedException
+     */
+    public List<StreamEvent> awaitAfter(long cursor, long timeout, TimeUnit unit) throws InterruptedException {
+        var remainingNanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (nextSequence - 1 <= cursor) {
+                if (remainingNanos <= 0) { return List.of(); }
+                remainingNanos = published.awaitNanos(remainingNanos);
+            }
+
+            var oldest = Math.max(cursor + 1, nextSequence - buffer.length);
+            List<StreamEvent> rv = new ArrayList<>((int) (nextSequence - oldest));
+            for (var sequence = oldest; sequence < nextSequence; sequence++) {
+                rv.add(buffer[(int) (sequence % buffer.length)]);
+            }
+            return rv;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     *
+     * @return sequence number of the newest entry, or 0 if nothing has been published
+     */
+    public long getLatestSequence() {
+        lock.lock();
+        try {
+            return nextSequence - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void append(EventType type, String domain, String key, String status, UUID txid) {
+        var at = ZonedDateTime.now(ZoneOffset.UTC).toString();
+        lock.lock();
+        try {
+            var sequence = nextSequence++;
+            buffer[(int) (sequence % buffer.length)] = new StreamEvent(sequence, type, domain, key, status, txid, at);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    public record StreamEvent(
+        long sequence,
+        EventType type,
+        String domain,
+        String key,
+        String status,
+        UUID txid,
+        String at
+    ) {}
+
+}
@@ -0,0 +1,138 @@
+package io.patchfox.input_service.components;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.patchfox.input_service.TracingConfig;
+import io.patchfox.input_service.jfr.IngestStageEvent;
+
+
+/*
+ * meters for the git ingest pipeline. every meter is tagged with the domain of the event it describes. stages are
+ * recorded as observations so each one is both a timer (patchfox.ingest.stage) and a span nested under whatever HTTP
+ * request or Kafka record the event came in on, plus an IngestStageEvent for flight recordings. the stage timers and
+ * the per-event summaries publish histograms so percentiles can be computed server side (ie - prometheus
+ * histogram_quantile) across instances.
+ */
+@Component
+public class IngestMetrics {
+
+    public static final String STAGE_OBSERVATION_NAME = "patchfox.ingest.stage";
+
+    public enum Stage { 
+        UPSERT_DATASET, 
+        UPSERT_DATASOURCE, 
+        LINK_DATASOURCE,
+        SERIALIZE_FILE, 
+        UNZIP, 
+        PARSE, 
+        SERIALIZE_PAYLOAD, 
+        SAVE_PACKAGES, 
+        SAVE_STATUS 
+    }
+
+    public enum Outcome { ACCEPTED, DUPLICATE, EMPTY_SBOM, MALFORMED, ERROR }
+
+    @FunctionalInterface
+    public interface StageTask<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ObservationRegistry observationRegistry;
+
+
+    /**
+     * runs task as the given stage. anything task throws is recorded against the stage and rethrown as-is.
+     * 
+     * @param stage
+     * @param domain
+     * @param txid
+     * @param task
+     * @return whatever task returns
+     * @throws E whatever task throws
+     */
+    public <T, E extends Exception> T observe(Stage stage, String domain, UUID txid, StageTask<T, E> task) throws E {
+        var stageName = stage.toString().toLowerCase();
+        var observation = Observation.createNotStarted(STAGE_OBSERVATION_NAME, observationRegistry)
+                                     .contextualName("ingest " + stageName)
+                                     .lowCardinalityKeyValue("stage", stageName)
+                                     .lowCardinalityKeyValue("domain", domain)
+                                     .highCardinalityKeyValue(TracingConfig.TXID_ATTRIBUTE, String.valueOf(txid))
+                                     .start();
+
+        var event = new IngestStageEvent();
+        event.begin();
+        var succeeded = false;
+        try (var scope = observation.openScope()) {
+            var rv = task.call();
+            succeeded = true;
+            return rv;
+        } catch (Exception e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+            event.end();
+            if (event.shouldCommit()) {
+                event.txid = String.valueOf(txid);
+                event.domain = domain;
+                event.stage = stageName;
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+
+
+    /**
+     * 
+     * @param outcome
+     * @param domain
+     */
+    public void recordOutcome(Outcome outcome, String domain) {
+        meterRegistry.counter("patchfox.ingest.outcomes", "outcome", outcome.toString().toLowerCase(), "domain", domain)
+                     .increment();
+    }
+
+
+    /**
+     * 
+     * @param domain
+     * @param packageCount number of packages in the event's SBOM
+     */
+    public void recordPackageCount(String domain, int packageCount) {
+        DistributionSummary.builder("patchfox.ingest.packages")
+                           .description("packages per ingested event")
+                           .tag("domain", domain)
+                           .publishPercentileHistogram()
+                           .register(meterRegistry)
+                           .record(packageCount);
+    }
+
+
+    /**
+     * 
+     * @param domain
+     * @param bytes size of the uploaded bundle
+     */
+    public void recordBundleSize(String domain, long bytes) {
+        DistributionSummary.builder("patchfox.ingest.bundle.size")
+                           .description("size of uploaded event bundles")
+                           .baseUnit("bytes")
+                           .tag("domain", domain)
+                           .publishPercentileHistogram()
+                           .register(meterRegistry)
+                           .record(bytes);
+    }
+
+}
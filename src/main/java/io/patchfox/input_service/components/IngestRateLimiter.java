@@ -0,0 +1,220 @@
+package io.patchfox.input_service.components;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Token buckets for git uploads, one per domain and one per datasource, each limiting both requests per second and
+ * bytes per second. Stops one tenant's CI flooding the ingest endpoint and starving every other domain of DB
+ * connections. Request tokens have to be there to be spent. Byte tokens may be overdrawn by a single upload - otherwise
+ * a bundle bigger than the burst could never get in - and the bucket then stays shut until it's paid back.
+ */
+@Slf4j
+@Component
+public class IngestRateLimiter {
+
+    public enum Scope { DOMAIN, DATASOURCE }
+
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // keyed by scope + domain or datasource purl. buckets that have filled back up are dropped once there are more than
+    // max-tracked-keys of them - a full bucket is the same as no bucket
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    // eviction walks every bucket so it runs at most once an interval, however many requests find the map over size
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime() - EVICTION_INTERVAL_NANOS);
+
+    private Limit domainLimit;
+
+    private Limit datasourceLimit;
+
+    @PostConstruct
+    void init() {
+        domainLimit = new Limit(
+            env.getRateLimitDomainRequestsPerSecond(),
+            env.getRateLimitDomainRequestBurst(),
+            env.getRateLimitDomainBytesPerSecond().toBytes(),
+            env.getRateLimitDomainByteBurst().toBytes()
+        );
+        datasourceLimit = new Limit(
+            env.getRateLimitDatasourceRequestsPerSecond(),
+            env.getRateLimitDatasourceRequestBurst(),
+            env.getRateLimitDatasourceBytesPerSecond().toBytes(),
+            env.getRateLimitDatasourceByteBurst().toBytes()
+        );
+        log.info("ingest rate limits - per domain: {} per datasource: {}", domainLimit, datasourceLimit);
+    }
+
+
+    /**
+     * takes one request and bytes worth of tokens from both the domain's and the datasource's buckets - or from
+     * neither if either is short.
+     *
+     * @param domain
+     * @param datasource
+     * @param bytes
+     * @return which limit was hit and when to try again, or empty if the upload may go ahead
+     */
+    public Optional<Throttle> tryAcquire(String domain, String datasource, long bytes) {
+        var now = System.nanoTime();
+        if (buckets.size() > env.getRateLimitMaxTrackedKeys()) { evict(now); }
+
+        var throttle = take(Scope.DOMAIN, domain, domainLimit, bytes, now);
+        if (throttle.isEmpty()) {
+            throttle = take(Scope.DATASOURCE, datasource, datasourceLimit, bytes, now);
+            if (throttle.isPresent()) { refund(Scope.DOMAIN, domain, domainLimit, bytes); }
+        }
+
+        throttle.ifPresent(t -> meterRegistry.counter(
+            "patchfox.ingest.throttled",
+            "domain", domain,
+            "scope", t.scope().toString().toLowerCase(),
+            "limit", t.limit()
+        ).increment());
+        return throttle;
+    }
+
+
+    private Optional<Throttle> take(Scope scope, String key, Limit limit, long bytes, long now) {
+        if (limit.isUnlimited()) { return Optional.empty(); }
+
+        var holder = new AtomicReference<Optional<Throttle>>(Optional.empty());
+        buckets.compute(getBucketKey(scope, key), (k, bucket) -> {
+            var refilled = (bucket == null) ? Bucket.full(limit, now) : bucket.refill(limit, now);
+            if (limit.requestsPerSecond() > 0 && refilled.requestTokens() < 1) {
+                var wait = secondsUntil(1 - refilled.requestTokens(), limit.requestsPerSecond());
+                holder.set(Optional.of(new Throttle(scope, "requests", wait)));
+                return refilled;
+            }
+            if (limit.bytesPerSecond() > 0 && refilled.byteTokens() <= 0) {
+                var wait = secondsUntil(-refilled.byteTokens(), limit.bytesPerSecond());
+                holder.set(Optional.of(new Throttle(scope, "bytes", wait)));
+                return refilled;
+            }
+            return refilled.take(limit, 1, bytes);
+        });
+        return holder.get();
+    }
+
+    private void refund(Scope scope, String key, Limit limit, long bytes) {
+        if (limit.isUnlimited()) { return; }
+        buckets.computeIfPresent(getBucketKey(scope, key), (k, bucket) -> bucket.take(limit, -1, -bytes).cap(limit));
+    }
+
+    private void evict(long now) {
+        var lastEviction = lastEvictionNanos.get();
+        if (now - lastEviction < EVICTION_INTERVAL_NANOS || !lastEvictionNanos.compareAndSet(lastEviction, now)) {
+            return;
+        }
+
+        buckets.entrySet().removeIf(entry -> {
+            var limit = entry.getKey().startsWith(Scope.DOMAIN.toString()) ? domainLimit : datasourceLimit;
+            return entry.getValue().refill(limit, now).isFull(limit);
+        });
+
+        // still too many that are in use - drop the ones touched longest ago. they come back full, which lets those
+        // keys burst once more but beats tracking without bound
+        var excess = buckets.size() - env.getRateLimitMaxTrackedKeys();
+        if (excess <= 0) { return; }
+        log.warn("{} rate limit buckets in use - dropping the {} least recently used", buckets.size(), excess);
+        buckets.entrySet()
+               .stream()
+               .sorted(Comparator.comparingLong(entry -> entry.getValue().refilledAtNanos()))
+               .limit(excess)
+               .map(Map.Entry::getKey)
+               .toList()
+               .forEach(buckets::remove);
+    }
+
+
+    private static String getBucketKey(Scope scope, String key) {
+        return scope + ":" + key;
+    }
+
+    private static long secondsUntil(double tokensNeeded, double tokensPerSecond) {
+        return Math.max(1, (long) Math.ceil(tokensNeeded / tokensPerSecond));
+    }
+
+
+    /**
+     *
+     * @param scope bucket that ran dry
+     * @param limit "requests" or "bytes"
+     * @param retryAfterSeconds
+     */
+    public record Throttle(Scope scope, String limit, long retryAfterSeconds) {}
+
+
+    /*
+     * a rate of 0 turns that half of the limit off
+     */
+    record Limit(double requestsPerSecond, double requestBurst, double bytesPerSecond, double byteBurst) {
+
+        boolean isUnlimited() {
+            return requestsPerSecond <= 0 && bytesPerSecond <= 0;
+        }
+
+    }
+
+
+    /*
+     * immutable so a bucket is only ever changed inside ConcurrentHashMap.compute() for its key
+     */
+    record Bucket(double requestTokens, double byteTokens, long refilledAtNanos) {
+
+        static Bucket full(Limit limit, long now) {
+            return new Bucket(limit.requestBurst(), limit.byteBurst(), now);
+        }
+
+        Bucket refill(Limit limit, long now) {
+            var elapsedSeconds = (now - refilledAtNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            return new Bucket(
+                requestTokens + elapsedSeconds * limit.requestsPerSecond(),
+                byteTokens + elapsedSeconds * limit.bytesPerSecond(),
+                now
+            ).cap(limit);
+        }
+
+        // only the halves of the limit that are on are charged so an unlimited half stays full 
+        Bucket take(Limit limit, double requests, double bytes) {
+            return new Bucket(
+                (limit.requestsPerSecond() > 0) ? requestTokens - requests : requestTokens,
+                (limit.bytesPerSecond() > 0) ? byteTokens - bytes : byteTokens,
+                refilledAtNanos
+            );
+        }
+
+        Bucket cap(Limit limit) {
+            return new Bucket(
+                Math.min(requestTokens, limit.requestBurst()),
+                Math.min(byteTokens, limit.byteBurst()),
+                refilledAtNanos
+            );
+        }
+
+        boolean isFull(Limit limit) {
+            return requestTokens >= limit.requestBurst() && byteTokens >= limit.byteBurst();
+        }
+
+    }
+
+}
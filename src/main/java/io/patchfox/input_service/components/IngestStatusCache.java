@@ -0,0 +1,133 @@
+package io.patchfox.input_service.components;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+
+/*
+ * Bounded record of what happened to recent uploads, keyed by txid and by event purl. This is the only place uploads
+ * that never made it into the datasource_event table (rejected, failed, still in flight) can be looked up. Least 
+ * recently used entries are dropped once the configured size is reached.
+ */
+@Component
+public class IngestStatusCache {
+
+    // stages an upload can be in before it has a datasource_event record. once it has one the stage is that record's
+    // status 
+    public static final String RECEIVED_STAGE = "RECEIVED";
+    public static final String REJECTED_STAGE = "REJECTED";
+    public static final String ERROR_STAGE = "ERROR";
+
+    @Autowired
+    EnvironmentComponent env;
+
+    private Map<UUID, IngestStatus> byTxid;
+    private Map<String, UUID> txidByEventPurl;
+
+    // not synchronized - a virtual thread that blocks entering a monitor pins its carrier 
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        var maxEntries = env.getIngestStatusCacheSize();
+        byTxid = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, IngestStatus> eldest) {
+                var evict = size() > maxEntries;
+                if (evict) { txidByEventPurl.remove(eldest.getValue().eventPurl(), eldest.getKey()); }
+                return evict;
+            }
+        };
+        txidByEventPurl = new LinkedHashMap<>();
+    }
+
+
+    /**
+     * 
+     * @param ingestStatus
+     */
+    public void put(IngestStatus ingestStatus) {
+        lock.lock();
+        try {
+            byTxid.put(ingestStatus.txid(), ingestStatus);
+            if (ingestStatus.eventPurl() != null && !isMappedToAcceptedUpload(ingestStatus)) {
+                txidByEventPurl.put(ingestStatus.eventPurl(), ingestStatus.txid());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // caller holds lock. a rejected duplicate or failed re-upload of an event that was already accepted mustn't hide 
+    // the accepted one from lookups by purl. only another accepted upload replaces it
+    private boolean isMappedToAcceptedUpload(IngestStatus ingestStatus) {
+        if (ingestStatus.hasEventRecord()) { return false; }
+        var mappedTxid = txidByEventPurl.get(ingestStatus.eventPurl());
+        if (mappedTxid == null || mappedTxid.equals(ingestStatus.txid())) { return false; }
+        var mapped = byTxid.get(mappedTxid);
+        return mapped != null && mapped.hasEventRecord();
+    }
+
+
+    /**
+     * 
+     * @param txid
+     * @return
+     */
+    public Optional<IngestStatus> getByTxid(UUID txid) {
+        lock.lock();
+        try {
+            return Optional.ofNullable(byTxid.get(txid));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 
+     * @param eventPurl
+     * @return most recent accepted upload of eventPurl, or the most recent upload if none has been accepted
+     */
+    public Optional<IngestStatus> getByEventPurl(String eventPurl) {
+        lock.lock();
+        try {
+            var txid = txidByEventPurl.get(eventPurl);
+            return (txid == null) ? Optional.empty() : Optional.ofNullable(byTxid.get(txid));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 
+     * @param txid
+     * @param eventPurl
+     * @param stage RECEIVED_STAGE, REJECTED_STAGE, ERROR_STAGE or a DatasourceEvent status
+     * @param code http status code the upload was answered with, if it has been
+     * @param error why the upload was rejected or failed, if it was
+     * @param updatedAt
+     * @param hasEventRecord true if the upload was accepted and there's a datasource_event record for it
+     */
+    public record IngestStatus(
+        UUID txid, 
+        String eventPurl, 
+        String stage, 
+        Integer code, 
+        String error, 
+        ZonedDateTime updatedAt,
+        boolean hasEventRecord
+    ) {}
+
+}
@@ -0,0 +1,149 @@
+package io.patchfox.input_service.components;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Runs work for the same key (a datasource purl) one task at a time and in submission order while work for different
+ * keys runs in parallel on a shared pool. This is what lets us keep the "historical data is processed in ascending
+ * temporal order" promise even when HTTP uploads and [n] Kafka listener threads are all handing us events for the
+ * same datasource at the same time.
+ */
+@Slf4j
+@Component
+public class KeyedOrderedExecutor {
+
+    @Autowired
+    EnvironmentComponent env;
+
+    private ExecutorService executor;
+
+    // the last task submitted for each key. new work for a key is chained off the end of this. entries remove
+    // themselves once they complete and are still the tail so the map only ever holds keys with work in flight.
+    private final Map<String, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    // key of the task the current worker thread is running, if any 
+    private final ThreadLocal<String> runningKey = new ThreadLocal<>();
+
+    // carries the submitter's trace context over to the worker thread so ingest spans nest under the request
+    private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+    @PostConstruct
+    void init() {
+        // a virtual thread per task. ordering still comes from the per-key chains and how many of them hit the db at 
+        // once is capped by the connection gate (see VirtualThreadConfig) rather than by a thread count 
+        if (env.isVirtualThreadsEnabled()) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ordered-ingest-", 0).factory());
+            return;
+        }
+
+        var threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(
+            env.getOrderedExecutorThreads(),
+            runnable -> {
+                var thread = new Thread(runnable, "ordered-ingest-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+
+    /**
+     * queues task to run after every task previously submitted for the same key has finished - regardless of whether
+     * those tasks succeeded. a task that submits more work under its own key has that work run inline, otherwise it 
+     * would be waiting on itself.
+     *
+     * @param key
+     * @param task
+     * @return
+     */
+    public <T> CompletableFuture<T> submit(String key, Callable<T> task) {
+        if (key.equals(runningKey.get())) {
+            try {
+                return CompletableFuture.completedFuture(task.call());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        var holder = new AtomicReference<CompletableFuture<T>>();
+        var contextualTask = contextSnapshotFactory.captureAll().wrap(task);
+        tails.compute(key, (k, tail) -> {
+            CompletableFuture<?> previous = (tail == null) ? CompletableFuture.completedFuture(null) : tail;
+            CompletableFuture<T> next = previous.handleAsync(
+                (ignoredResult, ignoredException) -> call(key, contextualTask), 
+                executor
+            );
+            holder.set(next);
+            return next;
+        });
+
+        var rv = holder.get();
+        rv.whenComplete((ignoredResult, ignoredException) -> tails.remove(key, rv));
+        return rv;
+    }
+
+
+    /**
+     * same as submit() but blocks the caller until the task is done. runtime exceptions thrown by the task are
+     * rethrown as-is so callers see the same thing they would have had they invoked the task directly.
+     *
+     * @param key
+     * @param task
+     * @return
+     */
+    public <T> T submitAndWait(String key, Callable<T> task) {
+        try {
+            return submit(key, task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) { throw re; }
+            throw e;
+        }
+    }
+
+
+    /**
+     *
+     * @return number of keys that currently have work queued or running
+     */
+    public int getActiveKeyCount() {
+        return tails.size();
+    }
+
+
+    private <T> T call(String key, Callable<T> task) {
+        runningKey.set(key);
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            runningKey.remove();
+        }
+    }
+
+}
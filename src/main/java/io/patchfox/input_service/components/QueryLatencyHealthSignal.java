@@ -0,0 +1,45 @@
+package io.patchfox.input_service.components;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * times a trivial round trip to the database. when even "SELECT 1" is slow the problem is the db itself (or the 
+ * network to it) rather than any one of our queries. a failed probe counts as degraded. 
+ */
+@Slf4j
+@Component
+public class QueryLatencyHealthSignal implements DatabaseHealthSignal {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Override
+    public Reading read() {
+        var startedAt = System.nanoTime();
+        try {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        } catch (DataAccessException e) {
+            log.warn("db latency probe failed: {}", e.toString());
+            return new Reading(true, false, "probe failed");
+        }
+
+        var latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        return new Reading(
+            latencyMs >= env.getBackpressureLatencyPauseMs(),
+            latencyMs <= env.getBackpressureLatencyResumeMs(),
+            "probe latency: " + latencyMs + "ms"
+        );
+    }
+
+}
@@ -0,0 +1,45 @@
+package io.patchfox.input_service.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.patchfox.input_service.services.EventStreamService;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * server-sent event stream of events being accepted and datasources/datasets changing status. lets dashboards and
+ * downstream tooling watch the pipeline without polling the db.
+ *
+ * example:
+ *     curl -N "http://localhost:8080/api/v1/input/stream?domain=acme"
+ */
+@Slf4j
+@RestController
+public class EventStreamController {
+
+    public static final String INPUT_STREAM_PATH = InputController.INPUT_PATH + "/stream";
+    public static final String GET_INPUT_STREAM_SIGNATURE = "GET_" + INPUT_STREAM_PATH;
+
+    @Autowired
+    EventStreamService eventStreamService;
+
+    @GetMapping(
+        value = INPUT_STREAM_PATH,
+        produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    SseEmitter streamHandler(
+        @RequestParam(required = false) String domain,
+        @RequestParam(required = false) String datasource,
+        @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        log.info("new event stream client. domain: {} datasource: {} lastEventId: {}", domain, datasource, lastEventId);
+        return eventStreamService.subscribe(domain, datasource, lastEventId);
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.patchfox.input_service.controllers;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.services.FlightRecorderService;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * start a time-boxed flight recording and get the .jfr file back when it's done. guarded the same way as MqController
+ * - feature flag plus a shared secret header - and answers 404 to anyone who doesn't pass both.
+ *
+ * example:
+ *     curl -X POST -H "PF-FF-JFR_CONTROLLER-SECRET: ..." "http://localhost:8080/api/v1/input/jfr/start?seconds=120"
+ *     curl -X POST -H "PF-FF-JFR_CONTROLLER-SECRET: ..." "http://localhost:8080/api/v1/input/jfr/stop" -o input.jfr
+ */
+@Slf4j
+@RestController
+public class FlightRecorderController {
+
+    public static final String INPUT_JFR_PATH = InputController.INPUT_PATH + "/jfr";
+    public static final String INPUT_JFR_START_PATH = INPUT_JFR_PATH + "/start";
+    public static final String INPUT_JFR_STOP_PATH = INPUT_JFR_PATH + "/stop";
+
+    public static final String HEADER_SECRET_KEY = "PF-FF-JFR_CONTROLLER-SECRET";
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    FlightRecorderService flightRecorderService;
+
+    @PostMapping(
+        value = INPUT_JFR_START_PATH,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    ResponseEntity<ApiResponse> startHandler(
+        @RequestAttribute UUID txid,
+        @RequestAttribute ZonedDateTime requestReceivedAt,
+        @RequestHeader Map<String, String> allHeaders,
+        @RequestParam(defaultValue = "60") long seconds
+    ) {
+        if ( !isAuthorized(allHeaders) ) { return new ResponseEntity<>(HttpStatus.NOT_FOUND); }
+
+        var apiResponse = flightRecorderService.start(seconds, txid, requestReceivedAt);
+        return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+    }
+
+    @PostMapping(
+        value = INPUT_JFR_STOP_PATH,
+        produces = MediaType.APPLICATION_OCTET_STREAM_VALUE
+    )
+    ResponseEntity<Resource> stopHandler(@RequestHeader Map<String, String> allHeaders) throws IOException {
+        if ( !isAuthorized(allHeaders) ) { return new ResponseEntity<>(HttpStatus.NOT_FOUND); }
+
+        var recordingPath = flightRecorderService.stop();
+        if (recordingPath.isEmpty()) { return new ResponseEntity<>(HttpStatus.CONFLICT); }
+
+        var contentDisposition = ContentDisposition.attachment()
+                                                   .filename(recordingPath.get().getFileName().toString())
+                                                   .build();
+        return ResponseEntity.ok()
+                             .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString())
+                             .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                             .body(new FileSystemResource(recordingPath.get()));
+    }
+
+    private boolean isAuthorized(Map<String, String> allHeaders) {
+        var secret = allHeaders.get(HEADER_SECRET_KEY.toLowerCase());
+        return env.isJfrControllerEnabled() && secret != null && secret.equals(env.getJfrControllerSecret());
+    }
+
+}
@@ -0,0 +1,66 @@
+package io.patchfox.input_service.controllers;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.services.IngestLatencyService;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * datasources whose events take longest to go from upload to READY_FOR_PROCESSING, slowest first. each entry has the
+ * p50/p95/max upload-to-ready and p95 commit-to-ready times over the window.
+ *
+ * example:
+ *     curl "http://localhost:8080/api/v1/input/latency/slowest?domain=acme&hours=6&limit=10"
+ */
+@Slf4j
+@RestController
+public class IngestLatencyController {
+
+    public static final String INPUT_LATENCY_SLOWEST_PATH = InputController.INPUT_PATH + "/latency/slowest";
+    public static final String GET_INPUT_LATENCY_SLOWEST_SIGNATURE = "GET_" + INPUT_LATENCY_SLOWEST_PATH;
+
+    public static final String DOMAIN_PARAM = "domain";
+    public static final String HOURS_PARAM = "hours";
+    public static final String LIMIT_PARAM = "limit";
+
+    @Autowired
+    IngestLatencyService ingestLatencyService;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @GetMapping(
+        value = INPUT_LATENCY_SLOWEST_PATH,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    ResponseEntity<ApiResponse> slowestHandler(
+        @RequestAttribute UUID txid,
+        @RequestAttribute ZonedDateTime requestReceivedAt,
+        @RequestParam(name = DOMAIN_PARAM, required = false) String domain,
+        @RequestParam(name = HOURS_PARAM) Optional<Integer> hours,
+        @RequestParam(name = LIMIT_PARAM) Optional<Integer> limit
+    ) {
+        var apiResponse = ingestLatencyService.getSlowestDatasources(
+            domain,
+            hours.filter(h -> h > 0).orElse(env.getIngestLatencyDefaultWindowHours()),
+            limit.filter(l -> l > 0).orElse(env.getIngestLatencyDefaultLimit()),
+            txid,
+            requestReceivedAt
+        );
+        return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+    }
+
+}
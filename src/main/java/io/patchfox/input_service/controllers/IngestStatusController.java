@@ -0,0 +1,67 @@
+package io.patchfox.input_service.controllers;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.patchfox.input_service.services.IngestStatusService;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * lets a caller find out what became of an upload - by the txid it was sent with or by its DatasourceEvent purl -
+ * rather than uploading the bundle again
+ *
+ * examples:
+ *     curl "http://localhost:8080/api/v1/input/status/5f0c6c0e-7f0e-4a4e-9d7e-1d1f0e4d2b6a"
+ *     curl "http://localhost:8080/api/v1/input/status?eventPurl=pkg%3Ageneric%2Facme%2Ffoo-service%3A%3Amain%40npm%3F..."
+ */
+@Slf4j
+@RestController
+public class IngestStatusController {
+
+    public static final String INPUT_STATUS_PATH = InputController.INPUT_PATH + "/status";
+    public static final String INPUT_STATUS_TXID_PATH = INPUT_STATUS_PATH + "/{lookupTxid}";
+    public static final String GET_INPUT_STATUS_SIGNATURE = "GET_" + INPUT_STATUS_PATH;
+
+    public static final String EVENT_PURL_PARAM = "eventPurl";
+
+    @Autowired
+    IngestStatusService ingestStatusService;
+
+    @GetMapping(
+        value = INPUT_STATUS_TXID_PATH,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    ResponseEntity<ApiResponse> statusByTxidHandler(
+        @RequestAttribute UUID txid,
+        @RequestAttribute ZonedDateTime requestReceivedAt,
+        @PathVariable UUID lookupTxid
+    ) {
+        var apiResponse = ingestStatusService.getStatusByTxid(lookupTxid, txid, requestReceivedAt);
+        return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+    }
+
+    @GetMapping(
+        value = INPUT_STATUS_PATH,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    ResponseEntity<ApiResponse> statusByEventPurlHandler(
+        @RequestAttribute UUID txid,
+        @RequestAttribute ZonedDateTime requestReceivedAt,
+        @RequestParam(name = EVENT_PURL_PARAM) String eventPurl
+    ) {
+        var apiResponse = ingestStatusService.getStatusByEventPurl(eventPurl, txid, requestReceivedAt);
+        return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+    }
+
+}
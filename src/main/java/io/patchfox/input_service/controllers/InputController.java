@@ -8,6 +8,7 @@ import java.util.Set;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +21,7 @@ import org.springframework.web.multipart.MultipartFile;
 import com.github.packageurl.PackageURL;
 
 import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.IngestAdmissionController;
 import io.patchfox.input_service.services.InputService;
 import io.patchfox.package_utils.json.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -91,15 +93,31 @@ public class InputController {
     @Autowired
     EnvironmentComponent env;
 
+    @Autowired
+    IngestAdmissionController admissionController;
+
     public static final String API_PATH_PREFIX = "/api/v1";
     public static final String INPUT_PATH = API_PATH_PREFIX + "/input";
     public static final String INPUT_GIT_PATH = INPUT_PATH + "/git"; // there will be others eg - /input/{something}
     public static final String POST_INPUT_GIT_SIGNATURE = "POST_" + INPUT_GIT_PATH;
     
+    // names of the request parameters. ApiRequest objects coming in over Kafka use the same names as data map keys 
+    public static final String DATASOURCE_EVENT_PARAM = "datasourceEvent";
+    public static final String EVENT_FILE_DATA_PARAM = "eventFileData";
+
     // these will always be lower cased like this 
     public static final String COMMIT_HASH_QUALIFIER_KEY = "commithash";
     public static final String COMMIT_DATETIME_QUALIFIER_KEY = "commitdatetime";
 
+    /**
+     * takes a multipart upload of one DatasourceEvent's bundle. datasourceEvent should be sent URL encoded in the query
+     * string with only eventFileData in the body, eg:
+     *     curl -F "eventFileData=@bundle.zip" \
+     *         "http://localhost:8080/api/v1/input/git?datasourceEvent=pkg%3Ageneric%2Facme%2F..."
+     * 
+     * that way a throttled upload is turned away before any of it is read (see RateLimitInterceptor). sending
+     * datasourceEvent as a form field still works but the whole upload is spooled before the rate limits are checked.
+     */
     @PostMapping(
         value = INPUT_GIT_PATH,
         produces = MediaType.APPLICATION_JSON_VALUE
@@ -236,10 +254,30 @@ public class InputController {
 
        /*
         * expectation is data file size max is enforced by spring by way of config values in application.properties 
-        * file. if we're here, all values considered valid. OK to proceed to service layer for processing. 
+        * file. if we're here, all values considered valid. OK to proceed to service layer for processing - once 
+        * there's room for it. 
         */
-        var apiResponse = inputService.handleGitEvent(txid, requestReceivedAt, datasourceEvent, eventFileData);
-        return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+        try (var admission = admissionController.admit(eventFileData)) {
+            if ( !admission.isAdmitted() ) {
+                // return error response - needs to be object of this type vs exception in case of kafka caller
+                var payload = ApiResponse.builder()
+                                         .txid(txid)
+                                         .requestReceivedAt(requestReceivedAt)
+                                         .code(HttpStatus.TOO_MANY_REQUESTS.value())
+                                         .serverMessage(
+                                             "too many uploads in progress. retry after " 
+                                                + admission.getRetryAfterSeconds() + " seconds."
+                                         )
+                                         .build();
+
+                return ResponseEntity.status(payload.getCode())
+                                     .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds()))
+                                     .body(payload);
+            }
+
+            var apiResponse = inputService.handleGitEvent(txid, requestReceivedAt, datasourceEvent, eventFileData);
+            return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+        }
 
     }
     
@@ -0,0 +1,63 @@
+package io.patchfox.input_service.controllers;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.services.ReprocessService;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * bulk retry of events in PROCESSING_ERROR from what the service already holds - see ReprocessService. answers 202
+ * as soon as the run has started - it can take a long while - and logs how it went against the request's txid.
+ *
+ * example:
+ *     curl -X POST "http://localhost:8080/api/v1/input/reprocess?domain=acme&limit=500"
+ */
+@Slf4j
+@RestController
+public class ReprocessController {
+
+    public static final String INPUT_REPROCESS_PATH = InputController.INPUT_PATH + "/reprocess";
+    public static final String POST_INPUT_REPROCESS_SIGNATURE = "POST_" + INPUT_REPROCESS_PATH;
+
+    @Autowired
+    ReprocessService reprocessService;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @PostMapping(
+        value = INPUT_REPROCESS_PATH,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    ResponseEntity<ApiResponse> reprocessHandler(
+        @RequestAttribute UUID txid,
+        @RequestAttribute ZonedDateTime requestReceivedAt,
+        @RequestParam(required = false) String domain,
+        @RequestParam(required = false) String datasource,
+        @RequestParam Optional<Integer> limit
+    ) {
+        log.info("reprocess requested. domain: {} datasource: {} limit: {}", domain, datasource, limit);
+        var apiResponse = reprocessService.reprocess(
+            domain,
+            datasource,
+            limit.filter(l -> l > 0).orElse(env.getReprocessDefaultLimit()),
+            txid,
+            requestReceivedAt
+        );
+        return ResponseEntity.status(apiResponse.getCode()).body(apiResponse);
+    }
+
+}
@@ -23,6 +23,7 @@ import io.patchfox.db_entities.entities.Finding;
 import io.patchfox.db_entities.entities.FindingData;
 import io.patchfox.db_entities.entities.FindingReporter;
 import io.patchfox.db_entities.entities.Package;
+import io.patchfox.input_service.components.IngestEventStream;
 import io.patchfox.input_service.repositories.DatasetRepository;
 import io.patchfox.input_service.repositories.DatasourceEventRepository;
 import io.patchfox.input_service.repositories.DatasourceRepository;
@@ -34,6 +35,7 @@ import io.patchfox.package_utils.data.sbom.SbomPackageData;
 import io.patchfox.package_utils.data.sbom.syft.SyftSbomPackageData;
 import io.patchfox.package_utils.json.ApiResponse;
 
+import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -59,6 +61,15 @@ public class HibernateHelper {
     @Autowired
     private DatasourceEventRepository datasourceEventRepository;
 
+    @Autowired
+    private OutboxHelper outboxHelper;
+
+    @Autowired
+    private IngestEventStream ingestEventStream;
+
+    @Autowired
+    private IngestLatencyHelper ingestLatencyHelper;
+
 
     /**
      * 
@@ -89,6 +100,156 @@ public class HibernateHelper {
 
 
 
+    /**
+     * flips datasourceRecord to READY_FOR_PROCESSING and saves it. 
+     * 
+     * don't override INITIALIZING because we need to make sure we've gathered as much historical data as possible 
+     * before processing - to reduce pipeline churn. 
+     *
+     * don't override PROCESSING because we don't want to kick off a new processing job until the whatever data is 
+     * currently in the queue for processing has been processed. 
+     * 
+     * @param datasourceRecord
+     * @return
+     */
+    @Transactional
+    public Datasource markDatasourceReadyForProcessing(Datasource datasourceRecord) {
+        if (
+            datasourceRecord.getStatus() != Datasource.Status.INITIALIZING
+            && datasourceRecord.getStatus() != Datasource.Status.PROCESSING
+            && datasourceRecord.getStatus() != Datasource.Status.READY_FOR_NEXT_PROCESSING
+        ) {
+            return saveDatasourceStatus(datasourceRecord, Datasource.Status.READY_FOR_PROCESSING);
+        }
+        return datasourceRepository.save(datasourceRecord);
+    }
+
+
+    /**
+     * same as markDatasourceReadyForProcessing() but for datasets 
+     * 
+     * @param datasetRecord
+     * @return
+     */
+    @Transactional
+    public Dataset markDatasetReadyForProcessing(Dataset datasetRecord) {
+        if (
+            datasetRecord.getStatus() != Dataset.Status.INITIALIZING
+            && datasetRecord.getStatus() != Dataset.Status.PROCESSING
+        ) {
+            return saveDatasetStatus(datasetRecord, Dataset.Status.READY_FOR_PROCESSING);
+        }
+        return datasetRepository.save(datasetRecord);
+    }
+
+
+    /**
+     * puts an event that failed downstream back in the queue using the payload we stored when it was ingested. the 
+     * event's datasource and datasets are flipped to READY_FOR_PROCESSING the same way a fresh upload would. 
+     * 
+     * @param datasourceEventId
+     * @return false if the event is gone, no longer in PROCESSING_ERROR, or has no stored payload
+     */
+    @Transactional
+    public boolean requeueFromStoredPayload(Long datasourceEventId) {
+        var datasourceEventRecord = datasourceEventRepository.findById(datasourceEventId).orElse(null);
+        if (
+            datasourceEventRecord == null
+            || datasourceEventRecord.getStatus() != DatasourceEvent.Status.PROCESSING_ERROR
+            || datasourceEventRecord.isPayloadNull()
+        ) {
+            return false;
+        }
+
+        datasourceEventRecord.setStatus(DatasourceEvent.Status.READY_FOR_PROCESSING);
+        datasourceEventRepository.save(datasourceEventRecord);
+
+        var datasourceRecord = markDatasourceReadyForProcessing(datasourceEventRecord.getDatasource());
+        for (var datasetRecord : datasourceRecord.getDatasets()) {
+            markDatasetReadyForProcessing(datasetRecord);
+        }
+        return true;
+    }
+
+
+    /**
+     * sets and saves the status of datasourceRecord. a transition into READY_FOR_PROCESSING is also written to the 
+     * outbox in the same transaction so downstream services hear about it without polling. whenever the datasource 
+     * ends up READY_FOR_PROCESSING its newly processable events have their ingest latency recorded.
+     * 
+     * @param datasourceRecord
+     * @param status
+     * @return
+     */
+    @Transactional
+    public Datasource saveDatasourceStatus(Datasource datasourceRecord, Datasource.Status status) {
+        var previousStatus = datasourceRecord.getStatus();
+        datasourceRecord.setStatus(status);
+        datasourceRecord = datasourceRepository.save(datasourceRecord);
+
+        if (previousStatus != status) {
+            ingestEventStream.publish(
+                IngestEventStream.EventType.DATASOURCE_STATUS,
+                datasourceRecord.getDomain(),
+                datasourceRecord.getPurl(),
+                status.toString(),
+                datasourceRecord.getLatestTxid()
+            );
+        }
+
+        if (status == Datasource.Status.READY_FOR_PROCESSING && previousStatus != status) {
+            outboxHelper.record(
+                OutboxHelper.AggregateType.DATASOURCE, 
+                datasourceRecord.getPurl(), 
+                status.toString(), 
+                datasourceRecord.getLatestTxid()
+            );
+        }
+
+        if (status == Datasource.Status.READY_FOR_PROCESSING) {
+            ingestLatencyHelper.recordReady(datasourceRecord);
+        }
+        return datasourceRecord;
+    }
+
+
+    /**
+     * same as saveDatasourceStatus() but for datasets 
+     * 
+     * @param datasetRecord
+     * @param status
+     * @return
+     */
+    @Transactional
+    public Dataset saveDatasetStatus(Dataset datasetRecord, Dataset.Status status) {
+        var previousStatus = datasetRecord.getStatus();
+        datasetRecord.setStatus(status);
+        datasetRecord = datasetRepository.save(datasetRecord);
+
+        if (previousStatus != status) {
+            // datasets span domains so there's no domain to tag these with 
+            ingestEventStream.publish(
+                IngestEventStream.EventType.DATASET_STATUS,
+                null,
+                datasetRecord.getName(),
+                status.toString(),
+                datasetRecord.getLatestTxid()
+            );
+        }
+
+        if (status == Dataset.Status.READY_FOR_PROCESSING && previousStatus != status) {
+            outboxHelper.record(
+                OutboxHelper.AggregateType.DATASET, 
+                datasetRecord.getName(), 
+                status.toString(), 
+                datasetRecord.getLatestTxid()
+            );
+        }
+        return datasetRecord;
+    }
+
+
+
     /**
      * 
      * @param reporters
@@ -251,10 +412,10 @@ public class HibernateHelper {
         datasourceRecord.setLastEventReceivedStatus(lastEventReceivedStatus);
 
         if ( !datasourceRecord.getStatus().equals(Datasource.Status.PROCESSING)) {
-            datasourceRecord.setStatus(Datasource.Status.PROCESSING_ERROR);
+            saveDatasourceStatus(datasourceRecord, Datasource.Status.PROCESSING_ERROR);
+        } else {
+            datasourceRepository.save(datasourceRecord);
         }
-        
-        datasourceRepository.save(datasourceRecord);
 
         // process datasets
         // for (var datasetRecord : datasourceRecord.getDatasets()) {
@@ -293,10 +454,10 @@ public class HibernateHelper {
                                      .datasources(new HashSet<Datasource>())
                                      .latestTxid(txid)
                                      //.datasourceEvents(new HashSet<DatasourceEvent>())
-                                     .status(Dataset.Status.INITIALIZING)
                                      .build(); 
 
-            return datasetRepository.save(newDataset);
+            // status is set through saveDatasetStatus() so the new dataset shows up on the event stream 
+            return saveDatasetStatus(newDataset, Dataset.Status.INITIALIZING);
         } else if (datasetRecords.size() > 1) {
             throw new IllegalStateException(
                 "datasetRecords unique column constraint has somehow been violated. " +
@@ -312,7 +473,8 @@ public class HibernateHelper {
                 dataset.getStatus() != Dataset.Status.INITIALIZING
                 && dataset.getStatus() != Dataset.Status.PROCESSING
             ) {
-                dataset.setStatus(Dataset.Status.INGESTING);
+                // only published if the dataset wasn't already INGESTING 
+                return saveDatasetStatus(dataset, Dataset.Status.INGESTING);
             }
             
             return datasetRepository.save(dataset);
@@ -360,26 +522,29 @@ public class HibernateHelper {
                                          .firstEventReceivedAt(requestReceivedAt)
                                          .lastEventReceivedAt(requestReceivedAt)
                                          .lastEventReceivedStatus(acceptedHttpStatus)
-                                         .status(Datasource.Status.INITIALIZING)
                                          .latestTxid(txid)
                                          .build();
+
+            // status is set through saveDatasourceStatus() so the new datasource shows up on the event stream 
+            return saveDatasourceStatus(datasourceRecord, Datasource.Status.INITIALIZING);
         } else {
             datasourceRecord = datasourceRecords.get(0);
             datasourceRecord.setLastEventReceivedAt(requestReceivedAt);
             datasourceRecord.setLastEventReceivedStatus(acceptedHttpStatus);
             datasourceRecord.setLatestTxid(txid);
+
+            var numberEventsReceived = datasourceRecord.getNumberEventsReceived() + 1;
+            datasourceRecord.setNumberEventsReceived(numberEventsReceived);
+
             // don't override the INITIALIZING flag here
             if (
                 datasourceRecord.getStatus() != Datasource.Status.INITIALIZING 
                 && datasourceRecord.getStatus() != Datasource.Status.PROCESSING
                 && datasourceRecord.getStatus() != Datasource.Status.READY_FOR_NEXT_PROCESSING
             ) {
-                datasourceRecord.setStatus(Datasource.Status.INGESTING);
+                // only published if the datasource wasn't already INGESTING 
+                return saveDatasourceStatus(datasourceRecord, Datasource.Status.INGESTING);
             }
-            
-
-            var numberEventsReceived = datasourceRecord.getNumberEventsReceived() + 1;
-            datasourceRecord.setNumberEventsReceived(numberEventsReceived);
         }
         // record status to db to ensure event gets noted before we go further 
         return datasourceRepository.save(datasourceRecord);
@@ -0,0 +1,203 @@
+package io.patchfox.input_service.helpers;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.patchfox.db_entities.entities.Datasource;
+import io.patchfox.db_entities.entities.DatasourceEvent;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Measures how long events take to become processable. An event is processable once it and its datasource are both
+ * READY_FOR_PROCESSING - which for a new datasource means waiting out the scheduler's quiet window. At that point we 
+ * record two intervals per event: from its commit and from when we received it. Each event is only recorded once - 
+ * the row in ingest_latency (see data.sql) is what says it has been - and the rows back the slowest datasources 
+ * summary.
+ */
+@Slf4j
+@Component
+public class IngestLatencyHelper {
+
+    public static final String LATENCY_METER_NAME = "patchfox.ingest.latency";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+
+    /**
+     * records every READY_FOR_PROCESSING event of datasourceRecord that hasn't been recorded yet. call once the 
+     * datasource itself is READY_FOR_PROCESSING. runs on the caller's connection so it commits or rolls back with the 
+     * status change. meters are only updated once that commits.
+     *
+     * @param datasourceRecord
+     */
+    public void recordReady(Datasource datasourceRecord) {
+        var readyAt = ZonedDateTime.now();
+        // only events without a row yet. a datasource that's been around a while has a lot of READY events and this
+        // runs every time it's marked READY again
+        var events = jdbcTemplate.query(
+            "SELECT e.id, e.commit_date_time, e.event_date_time FROM datasource_event e " +
+            "JOIN datasource d ON d.id = e.datasource_id WHERE d.purl = ? AND e.status = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM ingest_latency l WHERE l.datasource_event_id = e.id)",
+            (rs, rowNum) -> new EventTimes(
+                rs.getLong("id"),
+                toZonedDateTime(rs.getObject("commit_date_time", OffsetDateTime.class)),
+                toZonedDateTime(rs.getObject("event_date_time", OffsetDateTime.class))
+            ),
+            datasourceRecord.getPurl(),
+            DatasourceEvent.Status.READY_FOR_PROCESSING.toString()
+        );
+        if (events.isEmpty()) { return; }
+
+        var readyAtTimestamp = Timestamp.from(readyAt.toInstant());
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (var event : events) {
+            rows.add(new Object[] {
+                event.id(),
+                datasourceRecord.getPurl(),
+                datasourceRecord.getDomain(),
+                datasourceRecord.getType(),
+                getMillisBetween(event.commitDateTime(), readyAt),
+                getMillisBetween(event.eventDateTime(), readyAt),
+                readyAtTimestamp
+            });
+        }
+
+        var insertedCounts = jdbcTemplate.batchUpdate(
+            "INSERT INTO ingest_latency " +
+            "(datasource_event_id, datasource_purl, domain, datasource_type, commit_to_ready_ms, received_to_ready_ms, " + 
+            "ready_at) VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING",
+            rows
+        );
+
+        List<Object[]> recordedRows = new ArrayList<>();
+        for (var i = 0; i < insertedCounts.length; i++) {
+            if (insertedCounts[i] > 0) { recordedRows.add(rows.get(i)); }
+        }
+        if (recordedRows.isEmpty()) { return; }
+
+        log.info("{} event(s) for datasource {} are now processable", recordedRows.size(), datasourceRecord.getPurl());
+        Runnable recordMeters = () -> {
+            for (var row : recordedRows) {
+                getTimer("commit_to_ready", datasourceRecord).record(Duration.ofMillis((long) row[4]));
+                getTimer("received_to_ready", datasourceRecord).record(Duration.ofMillis((long) row[5]));
+            }
+        };
+
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            recordMeters.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordMeters.run();
+            }
+        });
+    }
+
+
+    /**
+     *
+     * @param domain only datasources in this domain. null for all
+     * @param since only events that became processable after this
+     * @param limit
+     * @return datasources ordered by their p95 received-to-ready time, slowest first
+     */
+    public List<DatasourceLatency> findSlowestDatasources(String domain, ZonedDateTime since, int limit) {
+        return jdbcTemplate.query(
+            "SELECT datasource_purl, domain, datasource_type, count(*) AS events, " +
+            "percentile_cont(0.5) WITHIN GROUP (ORDER BY received_to_ready_ms) AS received_p50, " +
+            "percentile_cont(0.95) WITHIN GROUP (ORDER BY received_to_ready_ms) AS received_p95, " +
+            "max(received_to_ready_ms) AS received_max, " +
+            "percentile_cont(0.95) WITHIN GROUP (ORDER BY commit_to_ready_ms) AS commit_p95 " +
+            "FROM ingest_latency WHERE ready_at >= ? AND (CAST(? AS varchar) IS NULL OR domain = ?) " +
+            "GROUP BY datasource_purl, domain, datasource_type ORDER BY received_p95 DESC LIMIT ?",
+            (rs, rowNum) -> new DatasourceLatency(
+                rs.getString("datasource_purl"),
+                rs.getString("domain"),
+                rs.getString("datasource_type"),
+                rs.getLong("events"),
+                Math.round(rs.getDouble("received_p50")),
+                Math.round(rs.getDouble("received_p95")),
+                rs.getLong("received_max"),
+                Math.round(rs.getDouble("commit_p95"))
+            ),
+            Timestamp.from(since.toInstant()),
+            domain,
+            domain,
+            limit
+        );
+    }
+
+
+    /**
+     *
+     * @param before
+     * @return number of rows removed
+     */
+    public int purge(ZonedDateTime before) {
+        return jdbcTemplate.update("DELETE FROM ingest_latency WHERE ready_at < ?", Timestamp.from(before.toInstant()));
+    }
+
+
+    private Timer getTimer(String interval, Datasource datasourceRecord) {
+        return Timer.builder(LATENCY_METER_NAME)
+                    .description("time for an event to become processable")
+                    .tag("interval", interval)
+                    .tag("domain", datasourceRecord.getDomain())
+                    .tag("datasource_type", datasourceRecord.getType())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofSeconds(1))
+                    .maximumExpectedValue(Duration.ofDays(1))
+                    .serviceLevelObjectives(env.getIngestLatencySlos())
+                    .register(meterRegistry);
+    }
+
+
+    // commit times come from the caller's git history so in theory they can be in the future 
+    private static long getMillisBetween(ZonedDateTime from, ZonedDateTime to) {
+        return (from == null) ? 0 : Math.max(0, Duration.between(from, to).toMillis());
+    }
+
+
+    private static ZonedDateTime toZonedDateTime(OffsetDateTime offsetDateTime) {
+        return (offsetDateTime == null) ? null : offsetDateTime.toZonedDateTime();
+    }
+
+
+    private record EventTimes(long id, ZonedDateTime commitDateTime, ZonedDateTime eventDateTime) {}
+
+
+    public record DatasourceLatency(
+        String datasourcePurl,
+        String domain,
+        String datasourceType,
+        long events,
+        long receivedToReadyP50Millis,
+        long receivedToReadyP95Millis,
+        long receivedToReadyMaxMillis,
+        long commitToReadyP95Millis
+    ) {}
+
+}
@@ -0,0 +1,180 @@
+package io.patchfox.input_service.helpers;
+
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * reads and writes table outbox_event (see data.sql). rows are written through the caller's connection so they commit
+ * or roll back together with whatever status change they describe. OutboxRelay claims, publishes and marks them 
+ * afterward.
+ */
+@Slf4j
+@Component
+public class OutboxHelper {
+
+    // data map keys of an outbox event 
+    public static final String AGGREGATE_TYPE_KEY = "type";
+    public static final String AGGREGATE_KEY_KEY = "key";
+    public static final String STATUS_KEY = "status";
+    public static final String TRANSITIONED_AT_KEY = "transitionedAt";
+
+    public enum AggregateType { DATASOURCE, DATASET }
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+
+    /**
+     * 
+     * @param aggregateType
+     * @param aggregateKey datasource purl or dataset name 
+     * @param status
+     * @param txid txid of the request that caused the transition, if known
+     */
+    public void record(AggregateType aggregateType, String aggregateKey, String status, UUID txid) {
+        var now = ZonedDateTime.now();
+        Map<String, Object> data = Map.of(
+            AGGREGATE_TYPE_KEY, aggregateType.toString(),
+            AGGREGATE_KEY_KEY, aggregateKey,
+            STATUS_KEY, status,
+            TRANSITIONED_AT_KEY, now.toString()
+        );
+
+        try {
+            jdbcTemplate.update(
+                "INSERT INTO outbox_event (aggregate_key, txid, payload, created_at) VALUES (?, ?, ?, ?)",
+                aggregateKey,
+                txid,
+                mapper.writeValueAsString(data),
+                Timestamp.from(now.toInstant())
+            );
+        } catch (JsonProcessingException e) {
+            // a map of strings always serializes
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * claims the oldest unpublished events for one relay pass. claiming is its own short transaction so nothing - not 
+     * the relay lock, not a connection - is held while the events are being sent. a pass that dies without marking or 
+     * releasing its claim holds things up for at most leaseMillis.
+     * 
+     * @param limit
+     * @param leaseMillis how long the claim keeps other passes off. must outlast the pass's sends
+     * @return oldest unpublished events, in the order they were written. empty if another pass still holds a claim - 
+     *         sending past its events could get keys out of order 
+     */
+    @Transactional
+    public List<OutboxEvent> claimUnpublished(int limit, long leaseMillis) {
+        if ( !tryAcquireRelayLock() ) { return List.of(); }
+
+        var claimed = jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM outbox_event WHERE published_at IS NULL AND claimed_until > now())",
+            Boolean.class
+        );
+        if (Boolean.TRUE.equals(claimed)) { return List.of(); }
+
+        return jdbcTemplate.query(
+            "UPDATE outbox_event SET claimed_until = now() + ? * interval '1 millisecond' WHERE id IN " 
+                + "(SELECT id FROM outbox_event WHERE published_at IS NULL ORDER BY id LIMIT ?) "
+                + "RETURNING id, aggregate_key, txid, payload",
+            (rs, rowNum) -> new OutboxEvent(
+                rs.getLong("id"),
+                rs.getString("aggregate_key"),
+                rs.getObject("txid", UUID.class),
+                readPayload(rs.getString("payload"))
+            ),
+            leaseMillis,
+            limit
+        ).stream()
+         // RETURNING doesn't promise any order
+         .sorted(Comparator.comparingLong(OutboxEvent::id))
+         .toList();
+    }
+
+
+    /**
+     * 
+     * @param ids
+     */
+    public void markPublished(List<Long> ids) {
+        if (ids.isEmpty()) { return; }
+        jdbcTemplate.batchUpdate(
+            "UPDATE outbox_event SET published_at = now(), claimed_until = NULL WHERE id = ?",
+            ids.stream().map(id -> new Object[]{id}).toList()
+        );
+    }
+
+
+    /**
+     * hands back claimed events that weren't sent so the next pass can pick them up straight away
+     * 
+     * @param ids
+     */
+    public void releaseClaims(List<Long> ids) {
+        if (ids.isEmpty()) { return; }
+        jdbcTemplate.batchUpdate(
+            "UPDATE outbox_event SET claimed_until = NULL WHERE id = ?",
+            ids.stream().map(id -> new Object[]{id}).toList()
+        );
+    }
+
+
+    /**
+     * 
+     * @param olderThan
+     * @return number of published rows removed
+     */
+    public int purgePublished(ZonedDateTime olderThan) {
+        return jdbcTemplate.update(
+            "DELETE FROM outbox_event WHERE published_at IS NOT NULL AND published_at < ?",
+            Timestamp.from(olderThan.toInstant())
+        );
+    }
+
+
+    /**
+     * only one instance of the service should claim at a time otherwise both could see no claim outstanding and claim
+     * overlapping batches. the lock is released when the caller's transaction ends.
+     * 
+     * @return true if this transaction now holds the relay lock
+     */
+    private boolean tryAcquireRelayLock() {
+        return Boolean.TRUE.equals(
+            jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext('outbox_event_relay'))", Boolean.class)
+        );
+    }
+
+
+    private Map<String, Object> readPayload(String payload) {
+        try {
+            return mapper.readValue(payload, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            log.error("unreadable outbox payload: {}", payload, e);
+            return Map.of();
+        }
+    }
+
+
+    public record OutboxEvent(long id, String aggregateKey, UUID txid, Map<String, Object> data) {}
+
+}
@@ -0,0 +1,63 @@
+package io.patchfox.input_service.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.web.multipart.MultipartFile;
+
+
+/*
+ * MultipartFile view of a bundle sitting in the staging store. lets claim-check requests coming in over Kafka go
+ * through exactly the same controller and service code HTTP uploads do. everything streams from disk - nothing is
+ * pulled into memory unless a caller explicitly asks for getBytes().
+ */
+public class StagedMultipartFile implements MultipartFile {
+
+    private final Path path;
+    private final String name;
+    private final String originalFilename;
+
+    public StagedMultipartFile(Path path, String name, String originalFilename) {
+        this.path = path;
+        this.name = name;
+        this.originalFilename = originalFilename;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public String getOriginalFilename() { return originalFilename; }
+
+    @Override
+    public String getContentType() { return "application/zip"; }
+
+    @Override
+    public boolean isEmpty() { return getSize() == 0; }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException { return Files.readAllBytes(path); }
+
+    @Override
+    public InputStream getInputStream() throws IOException { return Files.newInputStream(path); }
+
+    @Override
+    public void transferTo(File dest) throws IOException, IllegalStateException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
@@ -0,0 +1,113 @@
+package io.patchfox.input_service.interceptors;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.IngestRateLimiter;
+import io.patchfox.input_service.controllers.InputController;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Applies the per domain and per datasource ingest rate limits (see IngestRateLimiter) before the controller runs.
+ * Multipart requests are resolved lazily so when the caller puts datasourceEvent in the query string nothing of the
+ * upload has been read by the time a throttled request is turned away - its size comes from Content-Length. That's
+ * the form callers should use (see InputController). datasourceEvent as a form field is still accepted but getting at
+ * it means parsing the multipart request, so the limits apply only after the upload has been spooled. Those requests
+ * are counted by patchfox.ingest.throttle-checks with form=body so it's visible who still sends it that way.
+ */
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final IngestRateLimiter rateLimiter;
+
+    private final EnvironmentComponent env;
+
+    private final MeterRegistry meterRegistry;
+
+    public RateLimitInterceptor(IngestRateLimiter rateLimiter, EnvironmentComponent env, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.env = env;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        Object handler
+    ) throws Exception {
+        var datasourceEventString = getDatasourceEventQueryParam(request);
+        var form = "query";
+        if (datasourceEventString == null) {
+            datasourceEventString = request.getParameter(InputController.DATASOURCE_EVENT_PARAM);
+            form = "body";
+        }
+        meterRegistry.counter("patchfox.ingest.throttle-checks", "form", form).increment();
+        // malformed or missing - the controller answers those with a 400
+        if (datasourceEventString == null) { return true; }
+        PackageURL datasourceEvent;
+        try {
+            datasourceEvent = new PackageURL(datasourceEventString);
+        } catch (MalformedPackageURLException e) {
+            return true;
+        }
+
+        var domain = datasourceEvent.getNamespace();
+        if (domain == null || ( !env.getExpectedDomain().equals("*") && !env.getExpectedDomain().equals(domain) )) {
+            return true;
+        }
+
+        // chunked uploads don't say how big they are up front so they're charged as the biggest we accept
+        var bytes = request.getContentLengthLong();
+        if (bytes < 0) { bytes = env.getMaxBundleSize().toBytes(); }
+
+        var throttle = rateLimiter.tryAcquire(domain, datasourceEvent.getCoordinates(), bytes);
+        if (throttle.isEmpty()) { return true; }
+
+        log.info(
+            "throttled upload for {} - {} {} limit hit. retry after {}s",
+            datasourceEvent.getCoordinates(),
+            throttle.get().scope().toString().toLowerCase(),
+            throttle.get().limit(),
+            throttle.get().retryAfterSeconds()
+        );
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(throttle.get().retryAfterSeconds()));
+        throw HttpClientErrorException.create(
+            HttpStatus.TOO_MANY_REQUESTS,
+            HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+            headers,
+            null,
+            null
+        );
+    }
+
+
+    private static String getDatasourceEventQueryParam(HttpServletRequest request) {
+        // read off the query string ourselves - request.getParameter() would parse the multipart body
+        if (request.getQueryString() != null) {
+            var value = UriComponentsBuilder.newInstance()
+                                            .query(request.getQueryString())
+                                            .build()
+                                            .getQueryParams()
+                                            .getFirst(InputController.DATASOURCE_EVENT_PARAM);
+            if (value != null) { return UriUtils.decode(value, StandardCharsets.UTF_8); }
+        }
+        return null;
+    }
+
+}
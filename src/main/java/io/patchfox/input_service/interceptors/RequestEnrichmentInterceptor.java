@@ -5,8 +5,11 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.UUID;
 
+import org.springframework.web.filter.ServerHttpObservationFilter;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import io.micrometer.common.KeyValue;
+import io.patchfox.input_service.TracingConfig;
 import io.patchfox.package_utils.json.ApiRequest;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -43,6 +46,12 @@ public class RequestEnrichmentInterceptor implements HandlerInterceptor {
             }
         }
         request.setAttribute(ApiRequest.TXID_KEY, txid);
+
+        // so the request's span can be found by txid
+        var txidKeyValue = KeyValue.of(TracingConfig.TXID_ATTRIBUTE, txid.toString());
+        ServerHttpObservationFilter.findObservationContext(request)
+                                   .ifPresent(context -> context.addHighCardinalityKeyValue(txidKeyValue));
+
         var now = ZonedDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
         request.setAttribute(EVENT_RECEIVED_AT_ATTRIBUTE, now);
         return true;
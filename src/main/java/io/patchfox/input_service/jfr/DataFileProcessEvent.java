@@ -0,0 +1,36 @@
+package io.patchfox.input_service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/*
+ * parsing one file from an uploaded bundle (sbom, build metadata, git blame...) via DataFile.process()
+ */
+@Name("io.patchfox.input.DataFileProcess")
+@Label("Data File Process")
+@Description("parsing one data file from an uploaded event bundle")
+@Category({"PatchFox", "Ingest"})
+@StackTrace(false)
+public class DataFileProcessEvent extends jdk.jfr.Event {
+
+    @Label("Transaction Id")
+    public String txid;
+
+    @Label("File Type")
+    public String fileType;
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Package Count")
+    @Description("packages in the result if it's an sbom, otherwise 0")
+    public int packageCount;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+}
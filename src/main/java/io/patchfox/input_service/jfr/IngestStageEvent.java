@@ -0,0 +1,32 @@
+package io.patchfox.input_service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/*
+ * one stage of ingesting a git event - see IngestMetrics.Stage
+ */
+@Name("io.patchfox.input.IngestStage")
+@Label("Ingest Stage")
+@Description("a stage of ingesting a git event")
+@Category({"PatchFox", "Ingest"})
+@StackTrace(false)
+public class IngestStageEvent extends jdk.jfr.Event {
+
+    @Label("Transaction Id")
+    public String txid;
+
+    @Label("Domain")
+    public String domain;
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+}
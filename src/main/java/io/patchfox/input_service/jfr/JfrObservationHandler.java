@@ -0,0 +1,49 @@
+package io.patchfox.input_service.jfr;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+
+
+/*
+ * turns @Scheduled method observations (spring records one per run) into SchedulerTickEvents so ticks line up with 
+ * everything else in a recording without wrapping every method in ScheduledTasks
+ */
+@Component
+public class JfrObservationHandler implements ObservationHandler<Observation.Context> {
+
+    public static final String SCHEDULED_OBSERVATION_NAME = "tasks.scheduled.execution";
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return SCHEDULED_OBSERVATION_NAME.equals(context.getName());
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        var event = new SchedulerTickEvent();
+        event.begin();
+        context.put(SchedulerTickEvent.class, event);
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        SchedulerTickEvent event = context.get(SchedulerTickEvent.class);
+        if (event == null) { return; }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.task = getKeyValue(context, "code.namespace") + "." + getKeyValue(context, "code.function");
+            event.succeeded = (context.getError() == null);
+            event.commit();
+        }
+    }
+
+    private static String getKeyValue(Observation.Context context, String key) {
+        KeyValue keyValue = context.getLowCardinalityKeyValue(key);
+        return (keyValue == null) ? "" : keyValue.getValue();
+    }
+
+}
@@ -0,0 +1,32 @@
+package io.patchfox.input_service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/*
+ * saving a DatasourceEvent record and associating every package in its sbom with it
+ */
+@Name("io.patchfox.input.PackagePersist")
+@Label("Package Persist")
+@Description("saving an event record and its packages")
+@Category({"PatchFox", "Ingest"})
+@StackTrace(false)
+public class PackagePersistEvent extends jdk.jfr.Event {
+
+    @Label("Transaction Id")
+    public String txid;
+
+    @Label("Datasource Event Purl")
+    public String eventPurl;
+
+    @Label("Package Count")
+    public int packageCount;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+}
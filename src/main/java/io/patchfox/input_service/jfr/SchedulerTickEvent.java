@@ -0,0 +1,26 @@
+package io.patchfox.input_service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/*
+ * one run of a @Scheduled method - see JfrObservationHandler
+ */
+@Name("io.patchfox.input.SchedulerTick")
+@Label("Scheduler Tick")
+@Description("one run of a scheduled task")
+@Category({"PatchFox", "Scheduler"})
+@StackTrace(false)
+public class SchedulerTickEvent extends jdk.jfr.Event {
+
+    @Label("Task")
+    public String task;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+}
@@ -0,0 +1,85 @@
+package io.patchfox.input_service.jfr;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * with virtual threads on, a virtual thread that blocks inside a synchronized block or a native frame holds on to its
+ * carrier thread and enough of those at once starve every other virtual thread. the jvm reports each one as a
+ * jdk.VirtualThreadPinned event - this streams them in-process, counts them by the frame that pinned and logs the
+ * stack so the offending lock can be found without taking a recording.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    public static final String PINNED_EVENT_NAME = "jdk.VirtualThreadPinned";
+
+    // pins shorter than this are too brief to starve anyone and are the jvm's default threshold anyway
+    private static final Duration THRESHOLD = Duration.ofMillis(20);
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private RecordingStream stream;
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT_NAME).withThreshold(THRESHOLD).withStackTrace();
+        stream.onEvent(PINNED_EVENT_NAME, this::onPinned);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+
+
+    private void onPinned(RecordedEvent event) {
+        var frame = getTopApplicationFrame(event);
+        meterRegistry.counter("patchfox.virtual-threads.pinned", "frame", frame).increment();
+        log.warn(
+            "virtual thread {} pinned its carrier for {}ms at {}",
+            (event.getThread() == null) ? "?" : event.getThread().getJavaName(),
+            event.getDuration().toMillis(),
+            frame
+        );
+    }
+
+
+    /**
+     *
+     * @param event
+     * @return first io.patchfox frame on the pinned stack, or the top frame if there isn't one. keeps the metric's
+     *         frame tag to a handful of values
+     */
+    private static String getTopApplicationFrame(RecordedEvent event) {
+        var stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) { return "unknown"; }
+
+        var frames = stackTrace.getFrames();
+        var rv = frames.get(0);
+        for (var frame : frames) {
+            if (frame.getMethod().getType().getName().startsWith("io.patchfox")) {
+                rv = frame;
+                break;
+            }
+        }
+        return rv.getMethod().getType().getName() + "." + rv.getMethod().getName();
+    }
+
+}
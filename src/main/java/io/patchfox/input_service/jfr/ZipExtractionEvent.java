@@ -0,0 +1,35 @@
+package io.patchfox.input_service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/*
+ * unpacking an uploaded bundle onto disk
+ */
+@Name("io.patchfox.input.ZipExtraction")
+@Label("Zip Extraction")
+@Description("unpacking an uploaded event bundle")
+@Category({"PatchFox", "Ingest"})
+@StackTrace(false)
+public class ZipExtractionEvent extends jdk.jfr.Event {
+
+    @Label("Transaction Id")
+    public String txid;
+
+    @Label("Bundle Size")
+    @DataAmount
+    public long bundleBytes;
+
+    @Label("Extracted Files")
+    public int extractedFiles;
+
+    @Label("Extracted Size")
+    @DataAmount
+    public long extractedBytes;
+
+}
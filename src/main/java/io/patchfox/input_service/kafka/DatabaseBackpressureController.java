@@ -0,0 +1,137 @@
+package io.patchfox.input_service.kafka;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.input_service.components.DatabaseHealthSignal;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Stops the request listeners from pulling more work while the database can't keep up with what they already have.
+ * Every DatabaseHealthSignal bean is read on a short interval. If any of them reports degraded the request topic
+ * containers (including the retry topic ones) are paused - they keep their partitions and heartbeat but stop fetching.
+ * They're resumed once every signal reports recovered, which is deliberately a lower bar than the one that paused
+ * them so we don't flap.
+ */
+@Slf4j
+@Component
+public class DatabaseBackpressureController {
+
+    @Autowired
+    List<DatabaseHealthSignal> healthSignals;
+
+    @Autowired
+    KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    // not run off @Scheduled on purpose - a probe against a struggling db can block for as long as the pool's
+    // connection timeout and we don't want that holding up the shared scheduler thread
+    private ScheduledExecutorService checkScheduler;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("patchfox.kafka.listener.paused", paused, p -> p.get() ? 1 : 0)
+             .description("1 if request topic consumption is paused because the database is struggling")
+             .register(meterRegistry);
+
+        checkScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "db-backpressure");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkScheduler.scheduleWithFixedDelay(
+            this::safeCheck,
+            env.getBackpressureCheckIntervalMs(),
+            env.getBackpressureCheckIntervalMs(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        checkScheduler.shutdownNow();
+    }
+
+
+    /**
+     *
+     * @return true if request topic consumption is currently paused
+     */
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+
+    /**
+     * reads every health signal and pauses or resumes the request listeners accordingly
+     */
+    public void check() {
+        var readings = healthSignals.stream()
+                                    .collect(Collectors.toMap(
+                                        signal -> signal.getClass().getSimpleName(),
+                                        DatabaseHealthSignal::read
+                                    ));
+
+        var degraded = readings.values().stream().anyMatch(DatabaseHealthSignal.Reading::degraded);
+        var recovered = readings.values().stream().allMatch(DatabaseHealthSignal.Reading::recovered);
+
+        if ( !paused.get() && degraded ) {
+            log.warn("database is struggling - pausing request listeners. readings: {}", readings);
+            meterRegistry.counter("patchfox.kafka.listener.pauses").increment();
+            // flagged first so a container ListenerConcurrencyController is restarting right now sees it and pauses
+            paused.set(true);
+            getRequestContainers().forEach(MessageListenerContainer::pause);
+        } else if ( paused.get() && recovered ) {
+            log.info("database has recovered - resuming request listeners. readings: {}", readings);
+            getRequestContainers().forEach(MessageListenerContainer::resume);
+            paused.set(false);
+        }
+    }
+
+
+    private void safeCheck() {
+        try {
+            check();
+        } catch (Exception e) {
+            // an exception escaping here would cancel every future check
+            log.error("database backpressure check failed", e);
+        }
+    }
+
+
+    private List<MessageListenerContainer> getRequestContainers() {
+        // retry topic containers get ids derived from the main listener's id
+        return listenerRegistry.getListenerContainerIds()
+                               .stream()
+                               .filter(id ->
+                                   id.startsWith(KafkaBeans.REQUEST_LISTENER_ID)
+                                   || id.startsWith(KafkaBeans.REQUEST_BATCH_LISTENER_ID)
+                               )
+                               .map(listenerRegistry::getListenerContainer)
+                               .filter(container -> container != null && container.isRunning())
+                               .toList();
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.patchfox.input_service.kafka;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/*
+ * value deserializer for ApiRequest and ApiResponse records. picks the format from the record's content type header -
+ * CBOR records are read into the listener's "spring.json.value.default.type", everything else is handed to spring's
+ * JsonDeserializer untouched so JSON-only peers keep working.
+ */
+public class EnvelopeDeserializer<T> implements Deserializer<T> {
+
+    private final JsonDeserializer<T> jsonDeserializer = new JsonDeserializer<>();
+
+    private final ObjectMapper cborMapper = EnvelopeFormat.newCborMapper();
+
+    private Class<?> targetType;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+        var defaultType = configs.get(JsonDeserializer.VALUE_DEFAULT_TYPE);
+        if (defaultType instanceof Class<?> clazz) {
+            targetType = clazz;
+        } else if (defaultType != null) {
+            try {
+                targetType = ClassUtils.forName(defaultType.toString().trim(), ClassUtils.getDefaultClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        return jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        var contentTypeHeader = (headers == null) ? null : headers.lastHeader(EnvelopeFormat.CONTENT_TYPE_HEADER);
+        var format = (contentTypeHeader == null) 
+            ? EnvelopeFormat.JSON 
+            : EnvelopeFormat.fromContentType(new String(contentTypeHeader.value(), StandardCharsets.UTF_8));
+
+        if (format == EnvelopeFormat.JSON || data == null) {
+            return jsonDeserializer.deserialize(topic, headers, data);
+        }
+
+        if (targetType == null) {
+            throw new SerializationException(
+                "received " + format + " record on topic " + topic + " but no " + JsonDeserializer.VALUE_DEFAULT_TYPE 
+                + " is configured to read it into"
+            );
+        }
+
+        try {
+            return (T) cborMapper.readValue(data, targetType);
+        } catch (IOException e) {
+            throw new SerializationException("unable to read " + format + " record on topic " + topic, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+
+}
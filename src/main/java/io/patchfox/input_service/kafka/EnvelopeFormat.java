@@ -0,0 +1,54 @@
+package io.patchfox.input_service.kafka;
+
+import org.springframework.kafka.support.KafkaHeaders;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+
+/*
+ * wire formats EnvelopeSerializer can write ApiRequest and ApiResponse records in. the format is recorded in the 
+ * record's content type header so EnvelopeDeserializer can tell them apart. records without the header are JSON - 
+ * that's what every producer wrote before the header existed.
+ */
+public enum EnvelopeFormat {
+
+    JSON("application/json"),
+    CBOR("application/cbor");
+
+    public static final String CONTENT_TYPE_HEADER = KafkaHeaders.CONTENT_TYPE;
+
+    private final String contentType;
+
+    EnvelopeFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+
+    /**
+     *
+     * @param contentType
+     * @return the matching format or JSON if contentType is null or unrecognized
+     */
+    public static EnvelopeFormat fromContentType(String contentType) {
+        return CBOR.contentType.equalsIgnoreCase(contentType) ? CBOR : JSON;
+    }
+
+
+    /**
+     *
+     * @return mapper for binary envelopes. configured to be as forgiving about unknown fields as spring's JSON 
+     *         serde so either side can add fields without breaking the other
+     */
+    static ObjectMapper newCborMapper() {
+        return new ObjectMapper(new CBORFactory())
+            .findAndRegisterModules()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+}
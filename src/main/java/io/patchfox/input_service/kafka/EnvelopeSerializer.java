@@ -0,0 +1,73 @@
+package io.patchfox.input_service.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/*
+ * value serializer for ApiRequest and ApiResponse records. writes JSON exactly as spring's JsonSerializer does unless
+ * it's created with the CBOR format - KafkaBeans does that when "patchfox.kafka.envelope.format" is "cbor" - in which 
+ * case values are written as CBOR and tagged with a content type header. 
+ * 
+ * *!* only switch a producer to CBOR once everything consuming its topics reads with EnvelopeDeserializer
+ */
+public class EnvelopeSerializer<T> implements Serializer<T> {
+
+    private final JsonSerializer<T> jsonSerializer = new JsonSerializer<>();
+
+    private final ObjectMapper cborMapper = EnvelopeFormat.newCborMapper();
+
+    private final EnvelopeFormat format;
+
+    // for when kafka creates it from the value-serializer class name
+    public EnvelopeSerializer() {
+        this(EnvelopeFormat.JSON);
+    }
+
+    public EnvelopeSerializer(EnvelopeFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+        if (format == EnvelopeFormat.JSON || data == null || headers == null) {
+            return jsonSerializer.serialize(topic, headers, data);
+        }
+
+        try {
+            var rv = cborMapper.writeValueAsBytes(data);
+            headers.remove(EnvelopeFormat.CONTENT_TYPE_HEADER);
+            headers.add(
+                EnvelopeFormat.CONTENT_TYPE_HEADER, 
+                format.getContentType().getBytes(StandardCharsets.UTF_8)
+            );
+            return rv;
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("unable to write " + data.getClass() + " as " + format, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+
+}
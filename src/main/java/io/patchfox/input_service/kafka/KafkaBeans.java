@@ -1,25 +1,63 @@
 package io.patchfox.input_service.kafka;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import org.apache.catalina.connector.Response;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
 import org.springframework.kafka.config.TopicBuilder;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.stereotype.Component;
-import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.multipart.MultipartFile;
 
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+
+import io.patchfox.input_service.TracingConfig;
+import io.patchfox.input_service.components.BundleStagingStore;
 import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.KeyedOrderedExecutor;
 import io.patchfox.input_service.controllers.HealthCheckController;
+import io.patchfox.input_service.controllers.IngestLatencyController;
+import io.patchfox.input_service.controllers.IngestStatusController;
 import io.patchfox.input_service.controllers.InputController;
 import io.patchfox.input_service.controllers.RestInfoController;
 import io.patchfox.input_service.helpers.HibernateHelper;
@@ -31,9 +69,12 @@ import io.patchfox.input_service.repositories.FindingReporterRepository;
 import io.patchfox.input_service.repositories.FindingRepository;
 import io.patchfox.input_service.repositories.PackageRepository;
 import io.patchfox.input_service.services.RestInfoService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.ReceiverContext;
 import io.patchfox.package_utils.json.ApiRequest;
 import io.patchfox.package_utils.json.ApiResponse;
-import io.patchfox.package_utils.util.Pair;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,11 +82,12 @@ import lombok.extern.slf4j.Slf4j;
 @Component
 public class KafkaBeans {
 
-    @Autowired
-    private KafkaTemplate<String, ApiRequest> kafkaRequestTemplate;
+    // ids of the request topic listener containers - see ListenerConcurrencyController
+    public static final String REQUEST_LISTENER_ID = "requestListener";
+    public static final String REQUEST_BATCH_LISTENER_ID = "requestBatchListener";
 
     @Autowired
-    private KafkaTemplate<String, ApiResponse> kafkaResponseTemplate;
+    private KafkaPublisher kafkaPublisher;
 
     @Autowired 
     RestInfoService restInfoService;
@@ -80,6 +122,29 @@ public class KafkaBeans {
     @Autowired
     PackageRepository packageRepository;
 
+    @Autowired
+    KeyedOrderedExecutor orderedExecutor;
+
+    @Autowired
+    RequestTopicStats requestTopicStats;
+
+    @Autowired
+    BundleStagingStore bundleStagingStore;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ProcessedRequestStore processedRequestStore;
+
+    @Autowired
+    ObservationRegistry observationRegistry;
+
+    // see getInvokersBySignature()
+    private volatile Map<String, RequestInvoker> invokersBySignature;
+
+    private final ReentrantLock invokersLock = new ReentrantLock();
+
 
 
     //
@@ -106,6 +171,29 @@ public class KafkaBeans {
                            .build();
     }
 
+    @Bean
+    public NewTopic readyForProcessingTopic() {
+        return TopicBuilder.name(env.getOutboxTopicName())
+                           .partitions(10)
+                           .replicas(1)
+                           .build();
+    }
+
+
+    /**
+     * hands the producer factory an EnvelopeSerializer already set to "patchfox.kafka.envelope.format". passing the 
+     * format through the producer properties instead would have kafka warn that it isn't a known config 
+     * 
+     * @return
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public DefaultKafkaProducerFactoryCustomizer envelopeSerializerCustomizer() {
+        var format = EnvelopeFormat.valueOf(env.getEnvelopeFormat().trim().toUpperCase());
+        return producerFactory -> ((DefaultKafkaProducerFactory<Object, Object>) producerFactory)
+            .setValueSerializerSupplier(() -> new EnvelopeSerializer<>(format));
+    }
+
 
     //
     // create listeners for the topics this service will send and receive on.
@@ -114,47 +202,171 @@ public class KafkaBeans {
     // to make the id and topic configurable by way of the application.yml file.
     //
 
+    //
+    // requests that fail for a transient reason (see isTransient()) are forwarded to retry topics with increasing 
+    // delays and consumed by separate retry consumers so the main partitions keep moving. once the attempts are used up
+    // the record lands on the dead-letter topic and handleRequestDlt() answers the caller with a 500.
+    //
+    @RetryableTopic(
+        attempts = "${patchfox.kafka.request.retry.attempts}",
+        backoff = @Backoff(
+            delayExpression = "${patchfox.kafka.request.retry.initial-delay-ms}",
+            multiplierExpression = "${patchfox.kafka.request.retry.multiplier}",
+            maxDelayExpression = "${patchfox.kafka.request.retry.max-delay-ms}"
+        ),
+        include = RetryableRequestException.class,
+        kafkaTemplate = "kafkaTemplate",
+        autoCreateTopics = "true",
+        // *!* keep in step with serviceRequestTopic()
+        numPartitions = "10",
+        replicationFactor = "1"
+    )
     @KafkaListener(
+        id = REQUEST_LISTENER_ID,
+        idIsGroup = false,
         clientIdPrefix = "#'${spring.kafka.request.client-id-prefix}'",
         groupId = "#'${spring.kafka.group-name}'",
         topics = "#{'${spring.kafka.request-topic}'}",
+        autoStartup = "#{!${patchfox.kafka.request.batch-listener.enabled}}",
         properties = {"spring.json.value.default.type=io.patchfox.package_utils.json.ApiRequest"}
     )
-    public void listenToRequestTopic(ApiRequest apiRequest) throws Exception {
+    public void listenToRequestTopic(
+        @Payload ApiRequest apiRequest,
+        @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+        @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+        @Header(KafkaHeaders.RECEIVED_TOPIC) String topic
+    ) throws Exception {
         log.info("received apiRequest message: {}", apiRequest);
+        var startedAt = System.nanoTime();
+        if ( !topic.equals(env.getKafkaRequestTopicName()) ) {
+            log.info("retrying request with txid {} from topic {}", apiRequest.getTxid(), topic);
+            meterRegistry.counter("patchfox.kafka.request.retries", "topic", topic).increment();
+        }
+
+        // responses go out under the same key as the request so they stay ordered per datasource too
+        var responseKey = (key == null) ? getRecordKey(apiRequest) : key;
+        var apiResponse = handleApiRequest(apiRequest);
+        kafkaPublisher.sendResponse(apiRequest.getResponseTopicName(), responseKey, apiResponse);
+        requestTopicStats.record(partition, 1, System.nanoTime() - startedAt);
+    }
+
+    @DltHandler
+    public void handleRequestDlt(
+        @Payload ApiRequest apiRequest,
+        @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+        @Header(name = KafkaHeaders.DLT_EXCEPTION_MESSAGE, required = false) byte[] exceptionMessage
+    ) {
+        log.error(
+            "request with txid {} ran out of retries and was dead-lettered. last exception was: {}", 
+            apiRequest.getTxid(),
+            (exceptionMessage == null) ? "" : new String(exceptionMessage, StandardCharsets.UTF_8)
+        );
+        meterRegistry.counter("patchfox.kafka.request.dlt").increment();
+        deleteStagedBundle(apiRequest);
+
         var now = ZonedDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
-        var responseTopicName = apiRequest.getResponseTopicName();
-        var txid = apiRequest.getTxid();
-        var verb = apiRequest.getVerb();
-        var resource = apiRequest.getUri();
-        var resourceSignature = verb + "_" + resource.toString();
-        try {
-            var requestPair = new Pair<>(verb, resource);
-            var handlerMethod = restInfoService.getHandlerFor(requestPair);
-            var apiResponse = invokeMethod(txid, verb.toString(), resource.toString(), handlerMethod, now, apiRequest);
-            apiResponse.setResponderName(env.getServiceName());
-            apiResponse.setResponderResourceSignature(resourceSignature);
-            kafkaResponseTemplate.send(responseTopicName, apiResponse);
-        } catch (NullPointerException e) {
-            var notFoundResponse = ApiResponse.builder()
-                                              .responderName(env.getServiceName())
-                                              .code(Response.SC_NOT_FOUND)
-                                              .txid(txid)
-                                              .requestReceivedAt(now.toString())
-                                              .build();
-
-            kafkaResponseTemplate.send(responseTopicName, notFoundResponse);
-        } catch (Exception e) {
-            log.error("exception was: ", e);
-            var serverErrorResponse = ApiResponse.builder()
-                                              .responderName(env.getServiceName())
-                                              .code(Response.SC_INTERNAL_SERVER_ERROR)
-                                              .txid(txid)
-                                              .requestReceivedAt(now.toString())
-                                              .build();
-
-            kafkaResponseTemplate.send(responseTopicName, serverErrorResponse);
+        var responseKey = (key == null) ? getRecordKey(apiRequest) : key;
+        kafkaPublisher.sendResponse(
+            apiRequest.getResponseTopicName(), 
+            responseKey, 
+            getServerErrorResponse(apiRequest.getTxid(), now)
+        );
+    }
+
+    //
+    // batch flavor of the above. only one of the two is started - see "patchfox.kafka.request.batch-listener.enabled" 
+    // in file application.properties. offsets are committed once per batch after every response has been flushed.
+    //
+    @KafkaListener(
+        id = REQUEST_BATCH_LISTENER_ID,
+        idIsGroup = false,
+        clientIdPrefix = "#'${spring.kafka.request.client-id-prefix}'",
+        groupId = "#'${spring.kafka.group-name}'",
+        topics = "#{'${spring.kafka.request-topic}'}",
+        batch = "true",
+        autoStartup = "${patchfox.kafka.request.batch-listener.enabled}",
+        properties = {
+            "spring.json.value.default.type=io.patchfox.package_utils.json.ApiRequest",
+            "max.poll.records=${patchfox.kafka.request.batch-listener.max-poll-records}"
         }
+    )
+    public void listenToRequestTopicBatch(List<ConsumerRecord<String, ApiRequest>> records) throws Exception {
+        log.info("received batch of {} apiRequest messages", records.size());
+        var startedAt = System.nanoTime();
+
+        // group by datasource so every request for the same datasource is handled back to back on one worker in the 
+        // order it was polled. that keeps the ordering guarantee and lets that datasource's DB work run together. 
+        // different datasources are handled in parallel.
+        //
+        // *!* groups are keyed by the canonical datasource purl from the payload, never the record key. ingest 
+        // submits to the ordered executor again under that purl and only runs inline when it matches the group's key.
+        // a group keyed any other way (producer chosen keys, un-normalized purls) would block a pool thread waiting on
+        // work queued behind it on the same pool. 
+        var keys = new String[records.size()];
+        Map<String, List<Integer>> recordIndexesByKey = new LinkedHashMap<>();
+        for (var i = 0; i < records.size(); i++) {
+            var record = records.get(i);
+            var groupKey = Objects.requireNonNullElse(getRecordKey(record.value()), "");
+            keys[i] = (record.key() == null) ? groupKey : record.key();
+            recordIndexesByKey.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(i);
+        }
+
+        var responses = new ApiResponse[records.size()];
+        // container observation only covers record listeners so batch records get theirs here. each one continues 
+        // the trace its producer started.
+        var observations = new Observation[records.size()];
+        List<CompletableFuture<?>> groups = new ArrayList<>();
+        for (var entry : recordIndexesByKey.entrySet()) {
+            groups.add(orderedExecutor.submit(entry.getKey(), () -> {
+                for (var i : entry.getValue()) {
+                    observations[i] = getRecordObservation(records.get(i)).start();
+                    try (var scope = observations[i].openScope()) {
+                        responses[i] = handleApiRequest(records.get(i).value());
+                    } catch (RetryableRequestException e) {
+                        // retry topics only work with the record listener. a batch can't be partially re-driven so 
+                        // the caller gets a 500 same as before retries existed. 
+                        observations[i].error(e);
+                        deleteStagedBundle(records.get(i).value());
+                        var txid = records.get(i).value().getTxid();
+                        responses[i] = getServerErrorResponse(txid, ZonedDateTime.now(ZoneOffset.UTC));
+                    } finally {
+                        observations[i].stop();
+                    }
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(groups.toArray(new CompletableFuture<?>[0])).join();
+
+        for (var i = 0; i < records.size(); i++) {
+            final var index = i;
+            observations[i].scoped(() -> kafkaPublisher.sendResponse(
+                records.get(index).value().getResponseTopicName(), 
+                keys[index], 
+                responses[index]
+            ));
+        }
+        // everything above is sitting in the producer buffer. push it out as one batch before the container commits 
+        // offsets for this poll.
+        kafkaPublisher.flush();
+
+        var elapsedNanos = System.nanoTime() - startedAt;
+        var recordCountByPartition = records.stream()
+                                            .collect(Collectors.groupingBy(
+                                                ConsumerRecord::partition, 
+                                                Collectors.counting()
+                                            ));
+
+        for (var entry : recordCountByPartition.entrySet()) {
+            requestTopicStats.record(entry.getKey(), entry.getValue(), elapsedNanos);
+        }
+
+        log.info(
+            "processed batch of {} apiRequest messages in {}ms. records/s by partition: {}",
+            records.size(),
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+            requestTopicStats.getRecordsPerSecond()
+        );
     }
 
     @KafkaListener(
@@ -413,6 +625,104 @@ public class KafkaBeans {
 
 
     /**
+     * looks up and invokes the controller method that services apiRequest. failures are reported as 404 or 500 
+     * ApiResponse objects so there's always something to send back to the caller - unless the failure looks transient,
+     * in which case RetryableRequestException is thrown so the request can be retried.
+     * 
+     * @param apiRequest
+     * @return
+     * @throws RetryableRequestException
+     */
+    ApiResponse handleApiRequest(ApiRequest apiRequest) {
+        var now = ZonedDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+        var txid = apiRequest.getTxid();
+
+        // the listener's span. lets the record be found by txid
+        var observation = observationRegistry.getCurrentObservation();
+        if (observation != null && txid != null) {
+            observation.highCardinalityKeyValue(TracingConfig.TXID_ATTRIBUTE, txid.toString());
+        }
+        var resourceSignature = apiRequest.getVerb() + "_" + apiRequest.getUri().toString();
+
+        // GETs are cheap and have no side effects so there's nothing to gain from remembering them 
+        var dedup = !HttpMethod.GET.name().equals(apiRequest.getVerb().toString());
+        if (dedup) {
+            var previousResponse = processedRequestStore.find(txid, resourceSignature);
+            if (previousResponse.isPresent()) {
+                log.info("request with txid {} for {} was already serviced - resending response", txid, resourceSignature);
+                meterRegistry.counter("patchfox.kafka.request.duplicates").increment();
+                return previousResponse.get();
+            }
+        }
+
+        var invoker = getInvokersBySignature().get(resourceSignature);
+        if (invoker == null) {
+            return ApiResponse.builder()
+                              .responderName(env.getServiceName())
+                              .code(Response.SC_NOT_FOUND)
+                              .txid(txid)
+                              .requestReceivedAt(now.toString())
+                              .build();
+        }
+
+        try {
+            var apiResponse = invoker.invoke(txid, now, apiRequest).getBody();
+            apiResponse.setResponderName(env.getServiceName());
+            apiResponse.setResponderResourceSignature(resourceSignature);
+            // the record is acked either way - nothing is redelivered on its own. server errors and shed requests 
+            // aren't remembered so a producer that re-sends the same request (after Retry-After, for a 429) gets 
+            // another go at it rather than the cached answer
+            if (dedup && !isResendable(apiResponse)) {
+                processedRequestStore.save(txid, resourceSignature, apiResponse);
+            }
+            return apiResponse;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            if (isTransient(e)) {
+                log.warn("transient failure servicing request with txid {}: {}", txid, e.toString());
+                throw new RetryableRequestException(e);
+            }
+            log.error("exception was: ", e);
+            return getServerErrorResponse(txid, now);
+        }
+    }
+
+
+    /**
+     * 
+     * @param e
+     * @return true if anything in the cause chain of e indicates a failure that should clear up on its own 
+     */
+    public static boolean isTransient(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (
+                cause instanceof TransientDataAccessException
+                || cause instanceof RecoverableDataAccessException
+                || cause instanceof DataAccessResourceFailureException
+                || cause instanceof CannotCreateTransactionException
+                || cause instanceof SQLTransientException
+                || cause instanceof SQLRecoverableException
+            ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private ApiResponse getServerErrorResponse(UUID txid, ZonedDateTime requestReceivedAt) {
+        return ApiResponse.builder()
+                          .responderName(env.getServiceName())
+                          .code(Response.SC_INTERNAL_SERVER_ERROR)
+                          .txid(txid)
+                          .requestReceivedAt(requestReceivedAt.toString())
+                          .build();
+    }
+
+
+    /**
+     * puts apiRequest on the given topic keyed by getRecordKey() 
      * 
      * @param topic
      * @param apiRequest
@@ -424,75 +734,273 @@ public class KafkaBeans {
             throw new IllegalArgumentException(); 
         }
 
-        kafkaRequestTemplate.send(topic, apiRequest);
+        kafkaPublisher.sendRequest(topic, getRecordKey(apiRequest), apiRequest);
+    }
+
+
+    /**
+     * returns the Kafka record key for apiRequest. if the request carries a datasourceEvent purl the key is the 
+     * datasource purl (the event purl minus qualifiers) so every event for a datasource lands on the same partition and 
+     * is consumed in order. anything else is keyed by txid, which spreads it evenly across partitions.
+     * 
+     * @param apiRequest
+     * @return
+     */
+    public String getRecordKey(ApiRequest apiRequest) {
+        var data = apiRequest.getData();
+        if (data != null && data.get(InputController.DATASOURCE_EVENT_PARAM) != null) {
+            var datasourceEvent = data.get(InputController.DATASOURCE_EVENT_PARAM).toString();
+            try {
+                return new PackageURL(datasourceEvent).getCoordinates();
+            } catch (MalformedPackageURLException e) {
+                log.warn("could not parse datasourceEvent purl: {} -- keying message by txid", datasourceEvent);
+            }
+        }
+
+        return (apiRequest.getTxid() == null) ? null : apiRequest.getTxid().toString();
+    }
+
+
+    /**
+     * returns map of resource signature to a precompiled invoker for the controller method behind it. built once from
+     * the RestInfoService registry so dispatching a Kafka message is a single hash lookup. 
+     * 
+     * @return
+     */
+    Map<String, RequestInvoker> getInvokersBySignature() {
+        if (invokersBySignature == null) { buildInvokers(); }
+        return invokersBySignature;
+    }
+
+
+    /**
+     * binds a MethodHandle to each controller bean we know how to call from Kafka and wraps it with whatever 
+     * argument plumbing that controller method needs. 
+     */
+    private void buildInvokers() {
+        // first kafka request builds these, possibly on a virtual listener thread. getBean() below can block so this 
+        // is a lock rather than synchronized
+        invokersLock.lock();
+        try {
+            if (invokersBySignature == null) { invokersBySignature = createInvokers(); }
+        } finally {
+            invokersLock.unlock();
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private Map<String, RequestInvoker> createInvokers() {
+
+        Map<String, RequestInvoker> rv = new HashMap<>();
+        for (var entry : restInfoService.getHandlerMethodsBySignature().entrySet()) {
+            var restSignature = entry.getKey();
+            var handlerMethod = entry.getValue();
+
+            var bean = handlerMethod.getBean();
+            // I think this is a name only until the object is actually created. It's typed as an "Object" in the 
+            // HandlerMethod class.
+            if (bean.getClass() == String.class) { bean = context.getBean((String)bean); }
+            var beanMethod = handlerMethod.getMethod();
+            log.debug("bean method name is: {}", beanMethod.getName());
+            log.debug("bean type is: {}", handlerMethod.getBeanType());
+
+            MethodHandle handle;
+            try {
+                // controller methods are package private 
+                beanMethod.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(beanMethod).bindTo(bean);
+            } catch (IllegalAccessException e) {
+                log.error("unable to create method handle for {}", restSignature, e);
+                continue;
+            }
+
+            /*
+             * 
+             * WHEN YOU ADD A NEW REST CONTROLLER/SERVICE THIS IS WHERE YOU ADD THE HOOK TO ENSURE THE KAFKA LISTENER
+             * KNOWS HOW TO INVOKE THE CONTROLLER METHOD
+             * 
+             */
+            RequestInvoker invoker = switch (restSignature) {
+                case HealthCheckController.GET_PING_SIGNATURE, RestInfoController.GET_REST_INFO_SIGNATURE ->
+                    (txid, requestReceivedAt, apiRequest) -> 
+                        (ResponseEntity<ApiResponse>)handle.invoke(txid, requestReceivedAt);
+                case InputController.POST_INPUT_GIT_SIGNATURE ->
+                    (txid, requestReceivedAt, apiRequest) -> 
+                        invokeGitInput(handle, txid, requestReceivedAt, apiRequest);
+                case IngestStatusController.GET_INPUT_STATUS_SIGNATURE ->
+                    (txid, requestReceivedAt, apiRequest) -> 
+                        (ResponseEntity<ApiResponse>)handle.invoke(
+                            txid, 
+                            requestReceivedAt, 
+                            Objects.toString(apiRequest.getData().get(IngestStatusController.EVENT_PURL_PARAM), null)
+                        );
+                case IngestLatencyController.GET_INPUT_LATENCY_SLOWEST_SIGNATURE ->
+                    (txid, requestReceivedAt, apiRequest) -> 
+                        (ResponseEntity<ApiResponse>)handle.invoke(
+                            txid, 
+                            requestReceivedAt, 
+                            Objects.toString(apiRequest.getData().get(IngestLatencyController.DOMAIN_PARAM), null),
+                            getIntegerParam(apiRequest, IngestLatencyController.HOURS_PARAM),
+                            getIntegerParam(apiRequest, IngestLatencyController.LIMIT_PARAM)
+                        );
+                default -> null;
+            };
+
+            if (invoker != null) { rv.put(restSignature, invoker); }
+        }
+
+        log.info("kafka dispatch registered for resource signatures: {}", rv.keySet());
+        return Collections.unmodifiableMap(rv);
     }
 
 
     /**
-     * helper to invoke the handler method we already know is associated with a given REST URI. The method allows us 
-     * to invoke the method with the correct arguments w/o having to deal with a lot of wonky reflection that would 
-     * otherwise be necessary. 
+     * POST_INPUT_GIT_SIGNATURE takes the bundle either inline as eventFileData or, for claim-check requests, as a 
+     * reference and digest pointing at a bundle in the staging store. staged bundles are streamed from disk into the 
+     * same controller HTTP uploads go through and are removed once processing is done - unless it failed for a
+     * transient reason, in which case the bundle is kept for the retry topic's attempt. handleRequestDlt() and the
+     * batch listener remove it once there are no attempts left. bundles answered with a 429 or a 5xx are kept too so
+     * the producer can re-send the same request, ref included. ones nobody comes back for are purged after 
+     * "patchfox.ingest.staging.unclaimed-hours".
      * 
+     * @param handle
      * @param txid
-     * @param verb
-     * @param resource
-     * @param handlerMethod
      * @param requestReceivedAt
+     * @param apiRequest
      * @return
-     * @throws InvocationTargetException 
-     * @throws IllegalAccessException 
+     * @throws Throwable
+     */
+    @SuppressWarnings("unchecked")
+    private ResponseEntity<ApiResponse> invokeGitInput(
+        MethodHandle handle,
+        UUID txid,
+        ZonedDateTime requestReceivedAt,
+        ApiRequest apiRequest
+    ) throws Throwable {
+        var data = apiRequest.getData();
+
+        Object datasourceEvent = data.get(InputController.DATASOURCE_EVENT_PARAM);
+        if (datasourceEvent instanceof String datasourceEventString) {
+            try {
+                datasourceEvent = new PackageURL(datasourceEventString);
+            } catch (MalformedPackageURLException e) {
+                return getBadRequestResponse(txid, requestReceivedAt, "DatasourceEvent purl malformed");
+            }
+        }
+
+        if ( !data.containsKey(BundleStagingStore.EVENT_FILE_REF_KEY) ) {
+            var eventFileData = data.get(InputController.EVENT_FILE_DATA_PARAM);
+            return (ResponseEntity<ApiResponse>)handle.invoke(txid, requestReceivedAt, datasourceEvent, eventFileData);
+        }
+
+        var ref = Objects.toString(data.get(BundleStagingStore.EVENT_FILE_REF_KEY), null);
+        try {
+            MultipartFile eventFileData;
+            try {
+                eventFileData = bundleStagingStore.open(
+                    ref,
+                    Objects.toString(data.get(BundleStagingStore.EVENT_FILE_SHA256_KEY), null),
+                    Objects.toString(data.get(BundleStagingStore.EVENT_FILE_NAME_KEY), null)
+                );
+            } catch (IllegalArgumentException e) {
+                return getBadRequestResponse(txid, requestReceivedAt, "staged bundle reference or digest is invalid");
+            }
+            var rv = (ResponseEntity<ApiResponse>)handle.invoke(
+                txid, 
+                requestReceivedAt, 
+                datasourceEvent, 
+                eventFileData
+            );
+            if ( !isResendable(rv.getBody()) ) { bundleStagingStore.delete(ref); }
+            return rv;
+        } catch (Throwable e) {
+            if ( !isTransient(e) ) { bundleStagingStore.delete(ref); }
+            throw e;
+        }
+    }
+
+
+    /**
+     *
+     * @param apiResponse
+     * @return true if the caller may re-send the request that got apiResponse and expect a different outcome 
+     */
+    private static boolean isResendable(ApiResponse apiResponse) {
+        return apiResponse != null
+            && (
+                apiResponse.getCode() >= Response.SC_INTERNAL_SERVER_ERROR 
+                || apiResponse.getCode() == HttpStatus.TOO_MANY_REQUESTS.value()
+            );
+    }
+
+
+    /**
+     * removes apiRequest's staged bundle, if it has one. for requests that have run out of retries.
+     *
+     * @param apiRequest
+     */
+    private void deleteStagedBundle(ApiRequest apiRequest) {
+        var data = apiRequest.getData();
+        if (data == null || !data.containsKey(BundleStagingStore.EVENT_FILE_REF_KEY)) { return; }
+        bundleStagingStore.delete(Objects.toString(data.get(BundleStagingStore.EVENT_FILE_REF_KEY), null));
+    }
+
+
+    private ResponseEntity<ApiResponse> getBadRequestResponse(
+        UUID txid, 
+        ZonedDateTime requestReceivedAt, 
+        String serverMessage
+    ) {
+        var payload = ApiResponse.builder()
+                                 .txid(txid)
+                                 .requestReceivedAt(requestReceivedAt)
+                                 .code(HttpStatus.BAD_REQUEST.value())
+                                 .serverMessage(serverMessage)
+                                 .build();
+
+        return ResponseEntity.status(payload.getCode()).body(payload);
+    }
+
+
+    /*
+     * calls a controller method on behalf of a Kafka message 
      */
-    private ApiResponse invokeMethod(
-            UUID txid,
-            String verb,
-            String resource,
-            HandlerMethod handlerMethod, 
-            ZonedDateTime requestReceivedAt,
+    @FunctionalInterface
+    interface RequestInvoker {
+        ResponseEntity<ApiResponse> invoke(
+            UUID txid, 
+            ZonedDateTime requestReceivedAt, 
             ApiRequest apiRequest
-    ) throws IllegalAccessException, InvocationTargetException  {
-        // this should never happen so long as we call the RestInfoService helper methods first to 
-        // get a hold of the reflected Method obj representing the controller for the requested resource.
-        // I don't like returning null so we assume we can't find what we're looking for until we find it
-        // and replace this with whatever is more appropriate. 
-        var rv = ApiResponse.builder()
-                            .responderName(env.getServiceName())
-                            .code(Response.SC_NOT_FOUND)
-                            .txid(txid)
-                            .requestReceivedAt(requestReceivedAt.toString())
-                            .build();
-                            
-        var restSignature = verb + "_" + resource;
-
-        var bean = handlerMethod.getBean();
-        // I think this is a name only until the object is actually created. It's typed as an "Object" in the 
-        // HandlerMethod class.
-        if (bean.getClass() == String.class) { bean = context.getBean((String)bean); }
-        var beanMethod = handlerMethod.getMethod();
-        log.debug("bean method name is: {}", beanMethod.getName());
-        log.debug("bean var class is: {}", bean.getClass());
-        log.debug("bean type is: {}", handlerMethod.getBeanType());
-        log.debug("beanMethod is: {}", beanMethod);
-
-        /*
-         * 
-         * WHEN YOU ADD A NEW REST CONTROLLER/SERVICE THIS IS WHERE YOU ADD THE HOOK TO ENSURE THE KAFKA LISTENER
-         * KNOWS HOW TO INVOKE THE CONTROLLER METHOD
-         * 
-         */
-        switch(restSignature) {
-            case HealthCheckController.GET_PING_SIGNATURE:
-            case RestInfoController.GET_REST_INFO_SIGNATURE:
-                var re = (ResponseEntity<ApiResponse>)beanMethod.invoke(bean, txid, requestReceivedAt);
-                rv = re.getBody();
-                break;
-            case InputController.POST_INPUT_GIT_SIGNATURE:
-                var datasourceEvent = apiRequest.getData().get("datasourceEvent");
-                var eventFileData = apiRequest.getData().get("eventFileData");
-                re = (ResponseEntity<ApiResponse>)beanMethod.invoke(bean, txid, requestReceivedAt, datasourceEvent, eventFileData);
-                rv = re.getBody();
-                break;
+        ) throws Throwable;
+    }
+
+
+    // numeric request params arrive as whatever json made of them - usually an Integer but possibly a String
+    private static Optional<Integer> getIntegerParam(ApiRequest apiRequest, String key) {
+        var value = apiRequest.getData().get(key);
+        if (value == null) { return Optional.empty(); }
+        try {
+            return Optional.of(Integer.valueOf(value.toString()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
         }
-        return rv;
+    }
+
+
+    private Observation getRecordObservation(ConsumerRecord<String, ApiRequest> record) {
+        ReceiverContext<ConsumerRecord<String, ApiRequest>> context = new ReceiverContext<>((carrier, key) -> {
+            var header = carrier.headers().lastHeader(key);
+            return (header == null) ? null : new String(header.value(), StandardCharsets.UTF_8);
+        });
+        context.setCarrier(record);
+        context.setRemoteServiceName("kafka");
+
+        return Observation.createNotStarted("patchfox.kafka.request.record", () -> context, observationRegistry)
+                          .contextualName(record.topic() + " receive")
+                          .lowCardinalityKeyValue("messaging.destination.name", record.topic())
+                          .highCardinalityKeyValue("messaging.kafka.partition", String.valueOf(record.partition()))
+                          .highCardinalityKeyValue("messaging.kafka.offset", String.valueOf(record.offset()));
     }
 
 }
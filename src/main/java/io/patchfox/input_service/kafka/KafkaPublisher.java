@@ -0,0 +1,140 @@
+package io.patchfox.input_service.kafka;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.package_utils.json.ApiRequest;
+import io.patchfox.package_utils.json.ApiResponse;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Every record this service puts on Kafka goes through here. Sends are asynchronous but not fire-and-forget: the
+ * number of records in flight is capped so a burst blocks the caller instead of growing the producer buffer without
+ * limit, and anything that fails is counted and logged with its key. Retriable failures are left to the producer - it's
+ * idempotent with at most 5 requests in flight per connection, so its own retries keep records with the same key in
+ * order. A re-send from here would go out behind whatever was sent for that key in the meantime.
+ */
+@Slf4j
+@Component
+public class KafkaPublisher {
+
+    @Autowired
+    private KafkaTemplate<String, ApiRequest> kafkaRequestTemplate;
+
+    @Autowired
+    private KafkaTemplate<String, ApiResponse> kafkaResponseTemplate;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Semaphore inFlight;
+
+    @PostConstruct
+    void init() {
+        inFlight = new Semaphore(env.getPublisherMaxInFlight());
+
+        Gauge.builder("patchfox.kafka.send.in-flight", inFlight, s -> env.getPublisherMaxInFlight() - s.availablePermits())
+             .description("records handed to the producer that have not been acknowledged yet")
+             .register(meterRegistry);
+    }
+
+
+    /**
+     *
+     * @param topic
+     * @param key
+     * @param apiRequest
+     * @return future that completes once the record is acknowledged or we've given up on it
+     */
+    public CompletableFuture<SendResult<String, ApiRequest>> sendRequest(String topic, String key, ApiRequest apiRequest) {
+        return send(kafkaRequestTemplate, topic, key, apiRequest);
+    }
+
+
+    /**
+     *
+     * @param topic
+     * @param key
+     * @param apiResponse
+     * @return future that completes once the record is acknowledged or we've given up on it
+     */
+    public CompletableFuture<SendResult<String, ApiResponse>> sendResponse(
+        String topic,
+        String key,
+        ApiResponse apiResponse
+    ) {
+        return send(kafkaResponseTemplate, topic, key, apiResponse);
+    }
+
+
+    /**
+     * pushes out anything sitting in the producer buffers
+     */
+    public void flush() {
+        kafkaRequestTemplate.flush();
+        kafkaResponseTemplate.flush();
+    }
+
+
+    private <V> CompletableFuture<SendResult<String, V>> send(
+        KafkaTemplate<String, V> template,
+        String topic,
+        String key,
+        V value
+    ) {
+        acquirePermit(topic);
+        var startedAt = System.nanoTime();
+        CompletableFuture<SendResult<String, V>> sendFuture;
+        try {
+            sendFuture = template.send(topic, key, value);
+        } catch (Exception e) {
+            sendFuture = CompletableFuture.failedFuture(e);
+        }
+
+        return sendFuture.whenComplete((result, e) -> {
+            inFlight.release();
+            meterRegistry.timer("patchfox.kafka.send.latency", "topic", topic)
+                         .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+            if (e != null) {
+                log.error("giving up on record with key {} to topic {}", key, topic, e);
+                meterRegistry.counter("patchfox.kafka.send.errors", "topic", topic).increment();
+            }
+        });
+    }
+
+
+    /*
+     * blocks until there's room rather than failing. by the time most records are sent the work they report on has 
+     * been committed, so giving up here would lose the record and not the work
+     */
+    private void acquirePermit(String topic) {
+        var interrupted = false;
+        try {
+            if (inFlight.tryAcquire(env.getPublisherAcquireTimeoutMs(), TimeUnit.MILLISECONDS)) { return; }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        log.warn("still waiting for room to send to topic {} - too many records in flight", topic);
+        meterRegistry.counter("patchfox.kafka.send.permit-waits", "topic", topic).increment();
+        inFlight.acquireUninterruptibly();
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    }
+
+}
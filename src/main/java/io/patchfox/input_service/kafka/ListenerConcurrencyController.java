@@ -0,0 +1,237 @@
+package io.patchfox.input_service.kafka;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Sizes the request topic listener to the work in front of it. Every time adjust() runs it looks at how far behind
+ * the consumer group is and how long records have been taking, and moves the number of listener threads one step
+ * toward what it would take to drain the backlog within the target window - never outside the configured bounds and
+ * never past the number of partitions. Nothing is changed while DatabaseBackpressureController has the listeners
+ * paused - lag always grows then and adding threads would only add load to a database that's already struggling -
+ * or while there's no lag at all, since an idle group says nothing about how many threads it needs.
+ */
+@Slf4j
+@Component
+public class ListenerConcurrencyController {
+
+    @Autowired
+    KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    DatabaseBackpressureController backpressureController;
+
+    @Autowired
+    RequestTopicStats requestTopicStats;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private AdminClient adminClient;
+
+    // not run off @Scheduled - resizing restarts the container, which waits for in-flight records, and we don't want
+    // that holding up the shared scheduler thread 
+    private ScheduledExecutorService adjustScheduler;
+
+    // last observed values, exposed as gauges
+    private final AtomicLong totalLag = new AtomicLong();
+    private final AtomicInteger concurrency = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("patchfox.kafka.listener.lag", totalLag, AtomicLong::get)
+             .description("records on the request topic not yet consumed by this service's group")
+             .register(meterRegistry);
+        Gauge.builder("patchfox.kafka.listener.concurrency", concurrency, AtomicInteger::get)
+             .description("listener threads consuming the request topic")
+             .register(meterRegistry);
+
+        // no admin connection to the brokers unless there's a control loop to use it
+        if ( !env.isListenerAutoscaleEnabled() ) { return; }
+        adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        adjustScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "listener-autoscale");
+            thread.setDaemon(true);
+            return thread;
+        });
+        adjustScheduler.scheduleWithFixedDelay(
+            this::safeAdjust,
+            env.getListenerAutoscaleIntervalSeconds(),
+            env.getListenerAutoscaleIntervalSeconds(),
+            TimeUnit.SECONDS
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (adjustScheduler != null) { adjustScheduler.shutdownNow(); }
+        if (adminClient != null) { adminClient.close(); }
+    }
+
+
+    /**
+     * one step of the control loop
+     */
+    public void adjust() {
+        var container = getActiveContainer();
+        if (container == null || !env.isListenerAutoscaleEnabled() || backpressureController.isPaused()) { return; }
+
+        Map<Integer, Long> lagByPartition;
+        try {
+            lagByPartition = getLagByPartition();
+        } catch (Exception e) {
+            log.warn("unable to fetch consumer lag - leaving listener concurrency as is", e);
+            return;
+        }
+
+        var lag = lagByPartition.values().stream().mapToLong(Long::longValue).sum();
+        totalLag.set(lag);
+
+        var current = container.getConcurrency();
+        concurrency.set(current);
+        // no lag or no timings yet means nothing to size against. scaling down an idle group would just force a 
+        // rebalance every interval until it hit the minimum
+        if (lag == 0 || requestTopicStats.getAverageMillisPerRecord().isEmpty()) { return; }
+
+        var desired = getDesiredConcurrency(current, lag, lagByPartition.size());
+        if (desired == current) { return; }
+
+        log.info(
+            "changing request listener concurrency from {} to {}. lag by partition: {} avg ms/record by partition: {}",
+            current,
+            desired,
+            lagByPartition,
+            requestTopicStats.getAverageMillisPerRecord()
+        );
+        meterRegistry.counter("patchfox.kafka.listener.scaling", "direction", (desired > current) ? "up" : "down")
+                     .increment();
+
+        // concurrency only takes effect when the container starts. stopping commits what's been processed and the
+        // restart triggers a rebalance that hands partitions out across the new number of consumers.
+        container.stop();
+        container.setConcurrency(desired);
+        container.start();
+        concurrency.set(desired);
+
+        // a restarted container comes back unpaused. if the db backpressure check paused consumption while we were 
+        // restarting, put that back
+        if (backpressureController.isPaused()) { container.pause(); }
+    }
+
+
+    private void safeAdjust() {
+        try {
+            adjust();
+        } catch (Exception e) {
+            // an exception escaping here would cancel every future adjustment
+            log.error("listener concurrency adjustment failed", e);
+        }
+    }
+
+
+    /**
+     *
+     * @param current
+     * @param lag
+     * @param partitionCount
+     * @return current +/- 1 depending on whether the backlog can be drained within the target window
+     */
+    int getDesiredConcurrency(int current, long lag, int partitionCount) {
+        var max = env.getListenerMaxConcurrency();
+        if (partitionCount > 0) { max = Math.min(max, partitionCount); }
+        var min = Math.min(env.getListenerMinConcurrency(), max);
+
+        var avgMillisPerRecord = requestTopicStats.getAverageMillisPerRecord()
+                                                  .values()
+                                                  .stream()
+                                                  .mapToDouble(Double::doubleValue)
+                                                  .average()
+                                                  .orElse(0);
+
+        // each thread works through its share of the backlog one record at a time
+        var estimatedDrainMillis = (lag * avgMillisPerRecord) / Math.max(current, 1);
+        var targetDrainMillis = TimeUnit.SECONDS.toMillis(env.getListenerTargetDrainSeconds());
+
+        var desired = current;
+        if (estimatedDrainMillis > targetDrainMillis) {
+            desired = current + 1;
+        } else if (estimatedDrainMillis * 2 < targetDrainMillis) {
+            // only scale down when one fewer thread would still comfortably meet the target
+            desired = current - 1;
+        }
+
+        return Math.max(min, Math.min(max, desired));
+    }
+
+
+    private ConcurrentMessageListenerContainer<?, ?> getActiveContainer() {
+        for (var id : new String[]{KafkaBeans.REQUEST_LISTENER_ID, KafkaBeans.REQUEST_BATCH_LISTENER_ID}) {
+            if (
+                listenerRegistry.getListenerContainer(id) instanceof ConcurrentMessageListenerContainer<?, ?> container
+                && container.isRunning()
+            ) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+
+    private Map<Integer, Long> getLagByPartition() throws Exception {
+        var committed = adminClient.listConsumerGroupOffsets(env.getKafkaGroupName())
+                                   .partitionsToOffsetAndMetadata()
+                                   .get(env.getListenerAdminTimeoutMs(), TimeUnit.MILLISECONDS)
+                                   .entrySet()
+                                   .stream()
+                                   .filter(e -> e.getKey().topic().equals(env.getKafkaRequestTopicName()))
+                                   .filter(e -> e.getValue() != null)
+                                   .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().offset()));
+
+        Map<TopicPartition, OffsetSpec> latestRequest = committed.keySet()
+                                                                 .stream()
+                                                                 .collect(Collectors.toMap(
+                                                                     tp -> tp,
+                                                                     tp -> OffsetSpec.latest()
+                                                                 ));
+        var latest = adminClient.listOffsets(latestRequest)
+                                .all()
+                                .get(env.getListenerAdminTimeoutMs(), TimeUnit.MILLISECONDS);
+
+        Map<Integer, Long> rv = new HashMap<>();
+        for (var entry : committed.entrySet()) {
+            var endOffset = latest.get(entry.getKey()).offset();
+            rv.put(entry.getKey().partition(), Math.max(0, endOffset - entry.getValue()));
+        }
+        return rv;
+    }
+
+}
@@ -0,0 +1,93 @@
+package io.patchfox.input_service.kafka;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.connector.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.helpers.OutboxHelper;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * publishes outbox_event rows to the READY_FOR_PROCESSING topic in the order they were written. delivery is at least 
+ * once - a row is only marked published after the broker has acknowledged it, so a crash in between means it goes out
+ * again once its claim runs out. records are keyed by datasource purl or dataset name so consumers see transitions for
+ * any one of them in order. rows are claimed in one short transaction and sent outside of any, so a slow broker never
+ * holds a db connection or the relay lock.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    // value of ApiResponse.responderResourceSignature on every relayed event 
+    public static final String READY_FOR_PROCESSING_SIGNATURE = "READY_FOR_PROCESSING";
+
+    @Autowired
+    OutboxHelper outboxHelper;
+
+    @Autowired
+    KafkaPublisher kafkaPublisher;
+
+    @Autowired
+    EnvironmentComponent env;
+
+
+    /**
+     * publishes up to one batch of pending events. see ScheduledTasks
+     * 
+     * @return number of events published
+     */
+    public int relay() {
+        // the claim has to outlast the sends it covers, or another pass could send the rest of the backlog past them 
+        var events = outboxHelper.claimUnpublished(env.getOutboxBatchSize(), 2 * env.getOutboxSendTimeoutMs());
+        if (events.isEmpty()) { return 0; }
+
+        var sends = new ArrayList<CompletableFuture<?>>();
+        for (var event : events) {
+            var apiResponse = ApiResponse.builder()
+                                         .responderName(env.getServiceName())
+                                         .responderResourceSignature(READY_FOR_PROCESSING_SIGNATURE)
+                                         .code(Response.SC_OK)
+                                         .txid(event.txid())
+                                         .requestReceivedAt(ZonedDateTime.now(ZoneOffset.UTC).toString())
+                                         .data(event.data())
+                                         .build();
+            sends.add(kafkaPublisher.sendResponse(env.getOutboxTopicName(), event.aggregateKey(), apiResponse));
+        }
+        kafkaPublisher.flush();
+
+        // everything up to the first failure can be marked. the rest stays pending so it's retried in order. the whole
+        // batch shares one send timeout
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(env.getOutboxSendTimeoutMs());
+        var publishedIds = new ArrayList<Long>();
+        for (var i = 0; i < events.size(); i++) {
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                publishedIds.add(events.get(i).id());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                var cause = (e.getCause() == null) ? e : e.getCause();
+                log.warn("unable to relay outbox event {} - will retry. cause: {}", events.get(i).id(), cause.toString());
+                break;
+            }
+        }
+
+        outboxHelper.markPublished(publishedIds);
+        outboxHelper.releaseClaims(
+            events.subList(publishedIds.size(), events.size()).stream().map(OutboxHelper.OutboxEvent::id).toList()
+        );
+        log.info("relayed {} of {} pending outbox event(s)", publishedIds.size(), events.size());
+        return publishedIds.size();
+    }
+
+}
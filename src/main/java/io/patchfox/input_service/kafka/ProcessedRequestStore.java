@@ -0,0 +1,158 @@
+package io.patchfox.input_service.kafka;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.package_utils.json.ApiResponse;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Remembers the responses to requests that have already been serviced, keyed by txid and resource signature, so a
+ * redelivered record (rebalance, consumer restart before offsets were committed, producer retry) is answered from
+ * here instead of redoing the ingest. Entries live in table processed_request (see data.sql) with a small in-memory
+ * LRU in front of it and are purged once they are older than the configured TTL.
+ */
+@Slf4j
+@Component
+public class ProcessedRequestStore {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    // access-ordered so even reads modify it. guarded by recentLock rather than synchronized so a contended lookup 
+    // doesn't pin a virtual listener thread to its carrier
+    private Map<String, CachedResponse> recent;
+
+    private final ReentrantLock recentLock = new ReentrantLock();
+
+
+    @PostConstruct
+    void init() {
+        var maxEntries = env.getDedupCacheSize();
+        recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+
+    /**
+     *
+     * @param txid
+     * @param resourceSignature
+     * @return the response previously sent for this request if it completed within the TTL
+     */
+    public Optional<ApiResponse> find(UUID txid, String resourceSignature) {
+        var cutoff = Instant.now().minus(env.getDedupTtlMinutes(), ChronoUnit.MINUTES);
+
+        CachedResponse cached;
+        recentLock.lock();
+        try {
+            cached = recent.get(getCacheKey(txid, resourceSignature));
+        } finally {
+            recentLock.unlock();
+        }
+        if (cached != null && cached.completedAt().isAfter(cutoff)) {
+            return Optional.of(cached.apiResponse());
+        }
+
+        try {
+            var rows = jdbcTemplate.queryForList(
+                "SELECT response FROM processed_request WHERE txid = ? AND resource_signature = ? AND completed_at > ?",
+                String.class,
+                txid,
+                resourceSignature,
+                Timestamp.from(cutoff)
+            );
+            if (rows.isEmpty()) { return Optional.empty(); }
+
+            return Optional.of(mapper.readValue(rows.get(0), ApiResponse.class));
+        } catch (JsonProcessingException | DataAccessException e) {
+            // treat an unreadable entry or an unreachable table as a miss. worst case is we do the work again which is
+            // what would have happened without this class
+            log.warn("unable to read stored response for txid {} and signature {}", txid, resourceSignature, e);
+            return Optional.empty();
+        }
+    }
+
+
+    /**
+     * records that the request identified by txid and resourceSignature completed with apiResponse. failures to
+     * write are logged and swallowed - dedup is an optimization, not something a response should fail over.
+     *
+     * @param txid
+     * @param resourceSignature
+     * @param apiResponse
+     */
+    public void save(UUID txid, String resourceSignature, ApiResponse apiResponse) {
+        var now = Instant.now();
+        recentLock.lock();
+        try {
+            recent.put(getCacheKey(txid, resourceSignature), new CachedResponse(apiResponse, now));
+        } finally {
+            recentLock.unlock();
+        }
+
+        try {
+            jdbcTemplate.update(
+                "INSERT INTO processed_request (txid, resource_signature, response, completed_at) VALUES (?, ?, ?, ?) "
+                    + "ON CONFLICT (txid, resource_signature) DO NOTHING",
+                txid,
+                resourceSignature,
+                mapper.writeValueAsString(apiResponse),
+                Timestamp.from(now)
+            );
+        } catch (Exception e) {
+            log.warn("unable to record completed request for txid {} and signature {}", txid, resourceSignature, e);
+        }
+    }
+
+
+    /**
+     *
+     * @return number of rows removed from table processed_request
+     */
+    public int purgeExpired() {
+        var cutoff = Instant.now().minus(env.getDedupTtlMinutes(), ChronoUnit.MINUTES);
+        recentLock.lock();
+        try {
+            recent.values().removeIf(cached -> !cached.completedAt().isAfter(cutoff));
+        } finally {
+            recentLock.unlock();
+        }
+        return jdbcTemplate.update("DELETE FROM processed_request WHERE completed_at <= ?", Timestamp.from(cutoff));
+    }
+
+
+    private static String getCacheKey(UUID txid, String resourceSignature) {
+        return txid + "_" + resourceSignature;
+    }
+
+
+    private record CachedResponse(ApiResponse apiResponse, Instant completedAt) {}
+
+}
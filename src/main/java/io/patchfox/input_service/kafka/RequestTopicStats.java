@@ -0,0 +1,83 @@
+package io.patchfox.input_service.kafka;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/*
+ * per-partition throughput bookkeeping for the request topic listeners. everything recorded here is also published to
+ * the meter registry tagged by partition.
+ */
+@Component
+public class RequestTopicStats {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final Map<Integer, PartitionCounters> partitions = new ConcurrentHashMap<>();
+
+
+    /**
+     *
+     * @param partition
+     * @param recordCount
+     * @param elapsedNanos wall clock time spent processing those records
+     */
+    public void record(int partition, long recordCount, long elapsedNanos) {
+        var partitionTag = String.valueOf(partition);
+        meterRegistry.counter("patchfox.kafka.request.records", "partition", partitionTag).increment(recordCount);
+        meterRegistry.timer("patchfox.kafka.request.processing", "partition", partitionTag)
+                     .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        var counters = partitions.computeIfAbsent(partition, p -> new PartitionCounters());
+        counters.records.add(recordCount);
+        counters.elapsedNanos.add(elapsedNanos);
+    }
+
+
+    /**
+     *
+     * @return map of partition to records processed per second since startup
+     */
+    public Map<Integer, Double> getRecordsPerSecond() {
+        return partitions.entrySet()
+                         .stream()
+                         .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getRecordsPerSecond()));
+    }
+
+
+    /**
+     *
+     * @return map of partition to average milliseconds spent per record since startup
+     */
+    public Map<Integer, Double> getAverageMillisPerRecord() {
+        return partitions.entrySet()
+                         .stream()
+                         .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getAverageMillisPerRecord()));
+    }
+
+
+    private static class PartitionCounters {
+        final LongAdder records = new LongAdder();
+        final LongAdder elapsedNanos = new LongAdder();
+
+        double getRecordsPerSecond() {
+            var nanos = elapsedNanos.sum();
+            return (nanos == 0) ? 0 : records.sum() / (nanos / 1_000_000_000.0);
+        }
+
+        double getAverageMillisPerRecord() {
+            var count = records.sum();
+            return (count == 0) ? 0 : (elapsedNanos.sum() / 1_000_000.0) / count;
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package io.patchfox.input_service.kafka;
+
+
+/*
+ * thrown out of the request listener when servicing a request failed for a reason that is likely to go away on its own
+ * (ex - the database is briefly unreachable). the record is handed off to the retry topics instead of being answered
+ * with a 500.
+ */
+public class RetryableRequestException extends RuntimeException {
+
+    public RetryableRequestException(Throwable cause) {
+        super(cause);
+    }
+
+}
@@ -1,9 +1,13 @@
 package io.patchfox.input_service.repositories;
 
 
-import java.util.UUID;
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import io.patchfox.db_entities.entities.DatasourceEvent;
@@ -17,4 +21,17 @@ public interface DatasourceEventRepository extends JpaRepository<DatasourceEvent
     List<DatasourceEvent> findAllByDatasourcePurl(String purl);
 
     List<DatasourceEvent> findAllByStatusAndDatasourcePurl(DatasourceEvent.Status status, String purl);
+
+    List<DatasourceEvent> findAllByStatusAndEventDateTimeBefore(DatasourceEvent.Status status, ZonedDateTime before);
+
+    Optional<DatasourceEvent> findFirstByDatasourcePurlAndStatusInOrderByCommitDateTimeDesc(
+        String purl, 
+        Collection<DatasourceEvent.Status> statuses
+    );
+
+    List<DatasourceEvent> findAllByStatusAndPurlStartingWithOrderByCommitDateTimeAsc(
+        DatasourceEvent.Status status, 
+        String purlPrefix,
+        Limit limit
+    );
 }
\ No newline at end of file
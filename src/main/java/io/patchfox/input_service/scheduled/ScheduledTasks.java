@@ -1,8 +1,14 @@
 package io.patchfox.input_service.scheduled;
 
 
+import java.io.IOException;
+import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
@@ -15,9 +21,17 @@ import org.springframework.stereotype.Component;
 import io.patchfox.db_entities.entities.Dataset;
 import io.patchfox.db_entities.entities.Datasource;
 import io.patchfox.db_entities.entities.DatasourceEvent;
+import io.patchfox.input_service.components.BundleStagingStore;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.helpers.HibernateHelper;
+import io.patchfox.input_service.helpers.IngestLatencyHelper;
+import io.patchfox.input_service.helpers.OutboxHelper;
+import io.patchfox.input_service.kafka.OutboxRelay;
+import io.patchfox.input_service.kafka.ProcessedRequestStore;
 import io.patchfox.input_service.repositories.DatasetRepository;
 import io.patchfox.input_service.repositories.DatasourceEventRepository;
 import io.patchfox.input_service.repositories.DatasourceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,6 +49,30 @@ public class ScheduledTasks {
     @Autowired
     DatasourceEventRepository datasourceEventRepository;
 
+    @Autowired
+    HibernateHelper hibernateHelper;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ProcessedRequestStore processedRequestStore;
+
+    @Autowired
+    OutboxRelay outboxRelay;
+
+    @Autowired
+    OutboxHelper outboxHelper;
+
+    @Autowired
+    BundleStagingStore bundleStagingStore;
+
+    @Autowired
+    IngestLatencyHelper ingestLatencyHelper;
+
     /**
      * every minute check to see if we can toggle the INITIALIZING status on datasources and their dataset containers
      */
@@ -48,6 +86,151 @@ public class ScheduledTasks {
     }
 
 
+    /**
+     * releases events that have sat in the reorder buffer for at least the configured window. held events are 
+     * released per datasource in commitDateTime order. an event whose commit is older than one we've already released
+     * for the same datasource arrived too late to be put in order - those are released anyway and counted as late.
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${patchfox.ingest.reorder-release-interval-seconds}", timeUnit = TimeUnit.SECONDS)
+    public void releaseReorderBuffer() {
+        if (env.getReorderWindowSeconds() <= 0) { return; }
+        log.info("begin releaseReorderBuffer");
+
+        List<DatasourceEvent> heldEvents = datasourceEventRepository.findAllByStatusAndEventDateTimeBefore(
+            DatasourceEvent.Status.INGESTING,
+            ZonedDateTime.now().minusSeconds(env.getReorderWindowSeconds())
+        );
+
+        var heldEventsByDatasource = heldEvents.stream()
+                                               .collect(Collectors.groupingBy(
+                                                   datasourceEvent -> datasourceEvent.getDatasource().getPurl(),
+                                                   LinkedHashMap::new,
+                                                   Collectors.toList()
+                                               ));
+
+        for (var entry : heldEventsByDatasource.entrySet()) {
+            var datasourcePurl = entry.getKey();
+            var datasourceEvents = entry.getValue()
+                                        .stream()
+                                        .sorted(Comparator.comparing(DatasourceEvent::getCommitDateTime))
+                                        .toList();
+
+            var latestReleased = datasourceEventRepository.findFirstByDatasourcePurlAndStatusInOrderByCommitDateTimeDesc(
+                datasourcePurl,
+                List.of(DatasourceEvent.Status.READY_FOR_PROCESSING, DatasourceEvent.Status.PROCESSED)
+            );
+
+            var lateEventCount = 0;
+            for (var datasourceEvent : datasourceEvents) {
+                if (
+                    latestReleased.isPresent() 
+                    && datasourceEvent.getCommitDateTime().isBefore(latestReleased.get().getCommitDateTime())
+                ) {
+                    log.warn(
+                        "event {} arrived after a newer commit for the same datasource was already released", 
+                        datasourceEvent.getPurl()
+                    );
+                    lateEventCount++;
+                }
+
+                datasourceEvent.setStatus(DatasourceEvent.Status.READY_FOR_PROCESSING);
+                datasourceEventRepository.save(datasourceEvent);
+            }
+
+            var datasource = datasourceEvents.get(0).getDatasource();
+            log.info(
+                "released {} event(s) for datasource {} from reorder buffer. {} arrived late", 
+                datasourceEvents.size(),
+                datasourcePurl,
+                lateEventCount
+            );
+            meterRegistry.counter("patchfox.ingest.reorder.released", "domain", datasource.getDomain())
+                         .increment(datasourceEvents.size());
+            meterRegistry.counter("patchfox.ingest.reorder.late", "domain", datasource.getDomain())
+                         .increment(lateEventCount);
+
+            datasource = hibernateHelper.markDatasourceReadyForProcessing(datasource);
+            for (var dataset : datasource.getDatasets()) {
+                hibernateHelper.markDatasetReadyForProcessing(dataset);
+            }
+        }
+
+        log.info("done releaseReorderBuffer");
+    }
+
+
+    /**
+     * drops remembered responses that are older than the dedup TTL
+     */
+    @Scheduled(fixedDelayString = "${patchfox.kafka.request.dedup.purge-interval-minutes}", timeUnit = TimeUnit.MINUTES)
+    public void purgeProcessedRequests() {
+        var purgedCount = processedRequestStore.purgeExpired();
+        log.info("purged {} expired processed request record(s)", purgedCount);
+    }
+
+
+    /**
+     * pushes pending READY_FOR_PROCESSING notifications out to Kafka. keeps going while there are full batches 
+     * waiting so a burst doesn't have to wait out the interval between batches. 
+     */
+    @Scheduled(fixedDelayString = "${patchfox.outbox.relay-interval-ms}", timeUnit = TimeUnit.MILLISECONDS)
+    public void relayOutbox() {
+        try {
+            int relayedCount;
+            do {
+                relayedCount = outboxRelay.relay();
+            } while (relayedCount == env.getOutboxBatchSize());
+        } catch (Exception e) {
+            // rows stay pending and are picked up on the next run
+            log.error("outbox relay failed", e);
+        }
+    }
+
+
+    /**
+     * drops outbox rows that were published more than the retention period ago
+     */
+    @Transactional
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void purgeOutbox() {
+        var purgedCount = outboxHelper.purgePublished(ZonedDateTime.now().minusHours(env.getOutboxRetentionHours()));
+        log.info("purged {} published outbox event(s)", purgedCount);
+    }
+
+
+    /**
+     * drops ingest latency rows older than the retention period
+     */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void purgeIngestLatency() {
+        var purgedCount = ingestLatencyHelper.purge(ZonedDateTime.now().minusDays(env.getIngestLatencyRetentionDays()));
+        log.info("purged {} ingest latency record(s)", purgedCount);
+    }
+
+
+    /**
+     * drops bundles retained for reprocessing once they're older than the retention period, and staged claim-check
+     * bundles whose request never came back
+     */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void purgeRetainedBundles() {
+        try {
+            var purgedCount = bundleStagingStore.purgeRetained(
+                Instant.now().minus(env.getRetainFailedBundleHours(), ChronoUnit.HOURS)
+            );
+            log.info("purged {} retained bundle(s)", purgedCount);
+
+            var unclaimedCount = bundleStagingStore.purgeStaged(
+                Instant.now().minus(env.getUnclaimedStagedBundleHours(), ChronoUnit.HOURS)
+            );
+            log.info("purged {} unclaimed staged bundle(s)", unclaimedCount);
+        } catch (IOException e) {
+            log.error("unable to purge retained bundles", e);
+        }
+    }
+
+
     /**
      * 
      */
@@ -77,9 +260,8 @@ public class ScheduledTasks {
             }
 
             if (gtg) {
-                datasource.setStatus(Datasource.Status.READY_FOR_PROCESSING);   
                 log.info("marking datasource {} READY_FOR_PROCESSING", datasource.getPurl());
-                datasource = datasourceRepository.save(datasource);                
+                datasource = hibernateHelper.saveDatasourceStatus(datasource, Datasource.Status.READY_FOR_PROCESSING);
             }
 
         }
@@ -100,9 +282,8 @@ public class ScheduledTasks {
             }
 
             if (gtg) {
-                dataset.setStatus(Dataset.Status.READY_FOR_PROCESSING);   
                 log.info("marking dataset {} READY_FOR_PROCESSING", dataset.getName());
-                dataset = datasetRepository.save(dataset);                
+                dataset = hibernateHelper.saveDatasetStatus(dataset, Dataset.Status.READY_FOR_PROCESSING);
             }
 
         }
@@ -152,15 +333,14 @@ public class ScheduledTasks {
                     "READY_FOR_PROCESSING event(s) found for datasource: {} - marking datasource as READY_FOR_PROCESSING", 
                     datasource.getPurl()
                 );                
-                datasource.setStatus(Datasource.Status.READY_FOR_PROCESSING);   
+                datasource = hibernateHelper.saveDatasourceStatus(datasource, Datasource.Status.READY_FOR_PROCESSING);
             } else {
                 log.info(
                     "no READY_FOR_PROCESSING or INGESTING events found for datasource: {} - marking datasource as IDLE", 
                     datasource.getPurl()
                 );                
-                datasource.setStatus(Datasource.Status.IDLE);   
+                datasource = hibernateHelper.saveDatasourceStatus(datasource, Datasource.Status.IDLE);
             } 
-            datasource = datasourceRepository.save(datasource);                
         }
 
         // now check on the datasets
@@ -184,16 +364,14 @@ public class ScheduledTasks {
                     "found datasource with READY_FOR_PROCESSING data for dataset {} - marking dataset as READY_FOR_PROCESSING", 
                     dataset.getName()
                 );
-                dataset.setStatus(Dataset.Status.READY_FOR_PROCESSING); 
+                dataset = hibernateHelper.saveDatasetStatus(dataset, Dataset.Status.READY_FOR_PROCESSING);
             } else {
                 log.info(
                     "no datasources found in state INGESTING for dataset {} - marking dataset as IDLE", 
                     dataset.getName()
                 );
-                dataset.setStatus(Dataset.Status.IDLE);   
+                dataset = hibernateHelper.saveDatasetStatus(dataset, Dataset.Status.IDLE);
             } 
-
-            dataset = datasetRepository.save(dataset);                
         }
 
         // grab anything with a status of INITIALIZING that hasn't been updated in at least two minutes 
@@ -229,8 +407,7 @@ public class ScheduledTasks {
             }
 
             if (doneProcessing) {
-                dataset.setStatus(Dataset.Status.IDLE);
-                dataset = datasetRepository.save(dataset);
+                dataset = hibernateHelper.saveDatasetStatus(dataset, Dataset.Status.IDLE);
             }
         }
 
@@ -257,14 +434,12 @@ public class ScheduledTasks {
 
         for (var dataset : datasetsToProcess) {
             log.info("marking dataset {} READY_FOR_PROCESSING", dataset.getName());
-            dataset.setStatus(Dataset.Status.READY_FOR_PROCESSING);
             dataset.setUpdatedAt(ZonedDateTime.now());
-            dataset = datasetRepository.save(dataset);
+            dataset = hibernateHelper.saveDatasetStatus(dataset, Dataset.Status.READY_FOR_PROCESSING);
 
             for (var datasource : dataset.getDatasources()) {
                 log.info("marking datasource {} READY_FOR_PROCESSING", datasource.getPurl());
-                datasource.setStatus(Datasource.Status.READY_FOR_PROCESSING);
-                datasource = datasourceRepository.save(datasource);
+                datasource = hibernateHelper.saveDatasourceStatus(datasource, Datasource.Status.READY_FOR_PROCESSING);
             }
         }
 
@@ -295,8 +470,8 @@ public class ScheduledTasks {
                         datasetInProcessing.getName()
                     );
 
-                    datasetInProcessing.setStatus(Dataset.Status.PROCESSING_ERROR);
-                    datasetInProcessing = datasetRepository.save(datasetInProcessing);
+                    datasetInProcessing = 
+                        hibernateHelper.saveDatasetStatus(datasetInProcessing, Dataset.Status.PROCESSING_ERROR);
                 }
             }
         }
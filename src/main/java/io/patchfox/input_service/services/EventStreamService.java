@@ -0,0 +1,127 @@
+package io.patchfox.input_service.services;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.IngestEventStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Feeds IngestEventStream out to SSE clients. Each client gets its own virtual thread that reads the ring buffer from
+ * its own cursor, so a client on a slow connection only ever holds up itself. A client that falls more than a buffer's
+ * length behind is sent a "gap" event saying how many entries it missed, then carries on from the oldest one held.
+ */
+@Slf4j
+@Service
+public class EventStreamService {
+
+    public static final String GAP_EVENT_NAME = "gap";
+
+    @Autowired
+    IngestEventStream ingestEventStream;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private ExecutorService pumps;
+
+    @PostConstruct
+    void init() {
+        pumps = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("event-stream-", 0).factory());
+        Gauge.builder("patchfox.event-stream.subscribers", subscriberCount, AtomicInteger::get)
+             .description("connected event stream clients")
+             .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pumps.shutdownNow();
+    }
+
+
+    /**
+     *
+     * @param domain only send entries for this domain. null for all
+     * @param key only send entries for this datasource purl or dataset name. null for all
+     * @param lastEventId sequence number of the last entry the client saw, if it's reconnecting. null to start with
+     *                    whatever is published from now on
+     * @return
+     */
+    public SseEmitter subscribe(String domain, String key, Long lastEventId) {
+        // 0 means no timeout. clients go away by disconnecting which surfaces as a failed send
+        var emitter = new SseEmitter(0L);
+        // sequences start again from 0 when the service restarts, so an id from before the restart can be ahead of
+        // anything published since. left alone the client would wait on it and never be sent a thing
+        var latestSequence = ingestEventStream.getLatestSequence();
+        var startCursor = (lastEventId == null) ? latestSequence : Math.min(lastEventId, latestSequence);
+        subscriberCount.incrementAndGet();
+        pumps.submit(() -> pump(emitter, domain, key, startCursor));
+        return emitter;
+    }
+
+
+    private void pump(SseEmitter emitter, String domain, String key, long startCursor) {
+        var cursor = startCursor;
+        try {
+            while ( !Thread.currentThread().isInterrupted() ) {
+                var events = ingestEventStream.awaitAfter(
+                    cursor,
+                    env.getEventStreamHeartbeatSeconds(),
+                    TimeUnit.SECONDS
+                );
+
+                if (events.isEmpty()) {
+                    // keeps proxies from closing an idle connection and tells us if the client has gone
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    continue;
+                }
+
+                var missed = events.get(0).sequence() - cursor - 1;
+                if (missed > 0) {
+                    meterRegistry.counter("patchfox.event-stream.missed").increment(missed);
+                    emitter.send(SseEmitter.event().name(GAP_EVENT_NAME).data(missed));
+                }
+
+                for (var event : events) {
+                    cursor = event.sequence();
+                    if (domain != null && !domain.equals(event.domain())) { continue; }
+                    if (key != null && !key.equals(event.key())) { continue; }
+
+                    emitter.send(
+                        SseEmitter.event()
+                                  .id(String.valueOf(event.sequence()))
+                                  .name(event.type().toString())
+                                  .data(event, MediaType.APPLICATION_JSON)
+                    );
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("event stream client went away: {}", e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscriberCount.decrementAndGet();
+            emitter.complete();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package io.patchfox.input_service.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.package_utils.json.ApiResponse;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * On-demand Java Flight Recorder recordings. One recording at a time, always time-boxed so one that's forgotten about 
+ * stops on its own. The recording includes the ingest events in io.patchfox.input_service.jfr alongside the JVM's own.
+ * Only the most recent recording file is kept - starting a new one deletes the last one.
+ */
+@Slf4j
+@Service
+public class FlightRecorderService {
+
+    @Autowired
+    EnvironmentComponent env;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Recording recording;
+
+    private Path recordingPath;
+
+
+    /**
+     *
+     * @param durationSeconds how long to record for. clamped to "patchfox.jfr.max-duration-seconds"
+     * @param txid
+     * @param requestReceivedAt
+     * @return 202 once recording, 409 if a recording is already running
+     */
+    public ApiResponse start(long durationSeconds, UUID txid, ZonedDateTime requestReceivedAt) {
+        var duration = Duration.ofSeconds(Math.max(1, Math.min(durationSeconds, env.getJfrMaxDurationSeconds())));
+
+        lock.lock();
+        try {
+            if (recording != null && recording.getState() == RecordingState.RUNNING) {
+                return ApiResponse.builder()
+                                  .code(HttpStatus.CONFLICT.value())
+                                  .serverMessage("a recording is already running")
+                                  .txid(txid)
+                                  .requestReceivedAt(requestReceivedAt.toString())
+                                  .build();
+            }
+
+            discardRecording();
+            recordingPath = Files.createTempFile("patchfox-input-service-", ".jfr");
+            recording = new Recording(Configuration.getConfiguration(env.getJfrSettings()));
+            recording.setName("patchfox-" + txid);
+            recording.setDuration(duration);
+            recording.setToDisk(true);
+            // written here when the recording stops - whether that's stop() or the duration running out
+            recording.setDestination(recordingPath);
+            recording.start();
+            log.info("started flight recording {} for {}s", recordingPath, duration.toSeconds());
+        } catch (IOException | ParseException e) {
+            log.error("unable to start flight recording", e);
+            discardRecording();
+            return ApiResponse.builder()
+                              .code(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                              .serverMessage("unable to start recording")
+                              .txid(txid)
+                              .requestReceivedAt(requestReceivedAt.toString())
+                              .build();
+        } finally {
+            lock.unlock();
+        }
+
+        return ApiResponse.builder()
+                          .code(HttpStatus.ACCEPTED.value())
+                          .txid(txid)
+                          .requestReceivedAt(requestReceivedAt.toString())
+                          .data(Map.of("durationSeconds", duration.toSeconds()))
+                          .build();
+    }
+
+
+    /**
+     * stops the current recording if it's still running. calling this again after the recording is done hands back 
+     * the same file.
+     *
+     * @return the .jfr file. empty if nothing has been recorded
+     * @throws IOException
+     */
+    public Optional<Path> stop() throws IOException {
+        lock.lock();
+        try {
+            if (recording == null) { 
+                return Optional.ofNullable(recordingPath).filter(Files::exists); 
+            }
+
+            if (recording.getState() == RecordingState.RUNNING) { recording.stop(); }
+            recording.close();
+            recording = null;
+            log.info("stopped flight recording {} ({} bytes)", recordingPath, Files.size(recordingPath));
+            return Optional.of(recordingPath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @PreDestroy
+    void shutdown() {
+        lock.lock();
+        try {
+            discardRecording();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void discardRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+
+        if (recordingPath != null) {
+            try {
+                Files.deleteIfExists(recordingPath);
+            } catch (IOException e) {
+                log.warn("unable to delete old flight recording {}", recordingPath, e);
+            }
+            recordingPath = null;
+        }
+    }
+
+}
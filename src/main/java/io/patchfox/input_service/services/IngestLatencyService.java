@@ -0,0 +1,57 @@
+package io.patchfox.input_service.services;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import io.patchfox.input_service.helpers.IngestLatencyHelper;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * answers "which datasources are slowest to become processable" from the per event rows IngestLatencyHelper keeps
+ */
+@Slf4j
+@Service
+public class IngestLatencyService {
+
+    @Autowired
+    IngestLatencyHelper ingestLatencyHelper;
+
+
+    /**
+     *
+     * @param domain only datasources in this domain. null for all
+     * @param windowHours how far back to look
+     * @param limit max number of datasources to list
+     * @param txid
+     * @param requestReceivedAt
+     * @return
+     */
+    public ApiResponse getSlowestDatasources(
+        String domain,
+        int windowHours,
+        int limit,
+        UUID txid,
+        ZonedDateTime requestReceivedAt
+    ) {
+        var since = requestReceivedAt.minusHours(windowHours);
+        var slowest = ingestLatencyHelper.findSlowestDatasources(domain, since, limit);
+
+        return ApiResponse.builder()
+                          .code(HttpStatus.OK.value())
+                          .txid(txid)
+                          .requestReceivedAt(requestReceivedAt.toString())
+                          .data(Map.of(
+                              "since", since.toString(),
+                              "datasources", slowest
+                          ))
+                          .build();
+    }
+
+}
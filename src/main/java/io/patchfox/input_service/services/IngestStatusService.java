@@ -0,0 +1,218 @@
+package io.patchfox.input_service.services;
+
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import io.patchfox.db_entities.entities.DatasourceEvent;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.IngestStatusCache;
+import io.patchfox.input_service.components.IngestStatusCache.IngestStatus;
+import io.patchfox.input_service.repositories.DatasourceEventRepository;
+import io.patchfox.package_utils.json.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * answers "what became of my upload?" so a caller whose request timed out can check instead of sending the bundle
+ * again. answers come from IngestStatusCache where possible. an upload that made it into the datasource_event table 
+ * moves on through the pipeline after we've answered it, so for those the cache is only trusted for a short while 
+ * before the status is read back from the table.
+ */
+@Slf4j
+@Service
+public class IngestStatusService {
+
+    @Autowired
+    IngestStatusCache ingestStatusCache;
+
+    @Autowired
+    DatasourceEventRepository datasourceEventRepository;
+
+    @Autowired
+    EnvironmentComponent env;
+
+
+    /**
+     * notes that an upload has arrived and is about to be ingested 
+     * 
+     * @param txid
+     * @param eventPurl
+     */
+    public void recordReceived(UUID txid, String eventPurl) {
+        ingestStatusCache.put(
+            new IngestStatus(txid, eventPurl, IngestStatusCache.RECEIVED_STAGE, null, null, ZonedDateTime.now(), false)
+        );
+    }
+
+
+    /**
+     * notes how an upload was answered 
+     * 
+     * @param txid
+     * @param eventPurl
+     * @param apiResponse
+     * @param acceptedStage status the event record was left in when the upload was accepted
+     */
+    public void recordOutcome(UUID txid, String eventPurl, ApiResponse apiResponse, DatasourceEvent.Status acceptedStage) {
+        var httpStatus = HttpStatus.valueOf(apiResponse.getCode());
+        String stage;
+        if (httpStatus.is2xxSuccessful()) {
+            stage = acceptedStage.toString();
+        } else if (httpStatus.is4xxClientError()) {
+            stage = IngestStatusCache.REJECTED_STAGE;
+        } else {
+            stage = IngestStatusCache.ERROR_STAGE;
+        }
+
+        var error = httpStatus.is2xxSuccessful() 
+            ? null 
+            : Optional.ofNullable(apiResponse.getServerMessage()).orElse(httpStatus.getReasonPhrase());
+
+        ingestStatusCache.put(
+            new IngestStatus(
+                txid, 
+                eventPurl, 
+                stage, 
+                apiResponse.getCode(), 
+                error, 
+                ZonedDateTime.now(), 
+                httpStatus.is2xxSuccessful()
+            )
+        );
+    }
+
+
+    /**
+     * notes that ingesting an upload blew up rather than producing an answer 
+     * 
+     * @param txid
+     * @param eventPurl
+     * @param e
+     */
+    public void recordFailure(UUID txid, String eventPurl, Exception e) {
+        ingestStatusCache.put(
+            new IngestStatus(
+                txid, 
+                eventPurl, 
+                IngestStatusCache.ERROR_STAGE, 
+                HttpStatus.INTERNAL_SERVER_ERROR.value(), 
+                e.toString(), 
+                ZonedDateTime.now(),
+                false
+            )
+        );
+    }
+
+
+    /**
+     * 
+     * @param lookupTxid txid of the upload being asked about
+     * @param txid
+     * @param requestReceivedAt
+     * @return
+     */
+    public ApiResponse getStatusByTxid(UUID lookupTxid, UUID txid, ZonedDateTime requestReceivedAt) {
+        var cached = ingestStatusCache.getByTxid(lookupTxid);
+        var ingestStatus = isUsable(cached) 
+            ? cached
+            : datasourceEventRepository.findAllByTxid(lookupTxid)
+                                       .stream()
+                                       .findFirst()
+                                       .map(this::cacheFromRecord)
+                                       .or(() -> cached);
+
+        return getStatusResponse(ingestStatus, txid, requestReceivedAt);
+    }
+
+
+    /**
+     * 
+     * @param eventPurl purl of the DatasourceEvent being asked about
+     * @param txid
+     * @param requestReceivedAt
+     * @return
+     */
+    public ApiResponse getStatusByEventPurl(String eventPurl, UUID txid, ZonedDateTime requestReceivedAt) {
+        // an upload of this purl with no event record may be a rejected duplicate of one that was accepted before 
+        // the cache last saw it, so the db gets the first say for those
+        var cached = ingestStatusCache.getByEventPurl(eventPurl);
+        var ingestStatus = isUsable(cached) && cached.get().hasEventRecord()
+            ? cached
+            : datasourceEventRepository.findAllByPurl(eventPurl)
+                                       .stream()
+                                       .findFirst()
+                                       .map(this::cacheFromRecord)
+                                       .or(() -> cached);
+
+        return getStatusResponse(ingestStatus, txid, requestReceivedAt);
+    }
+
+
+    /**
+     * uploads that never got an event record can only be answered from the cache. everything else is only good for 
+     * as long as the configured freshness window 
+     */
+    private boolean isUsable(Optional<IngestStatus> cached) {
+        if (cached.isEmpty()) { return false; }
+        if ( !cached.get().hasEventRecord() ) { return true; }
+        return cached.get()
+                     .updatedAt()
+                     .plusSeconds(env.getIngestStatusCacheFreshSeconds())
+                     .isAfter(ZonedDateTime.now());
+    }
+
+
+    private Optional<IngestStatus> cacheFromRecord(DatasourceEvent datasourceEvent) {
+        var ingestStatus = new IngestStatus(
+            datasourceEvent.getTxid(),
+            datasourceEvent.getPurl(),
+            datasourceEvent.getStatus().toString(),
+            null,
+            null,
+            ZonedDateTime.now(),
+            true
+        );
+        ingestStatusCache.put(ingestStatus);
+        return Optional.of(ingestStatus);
+    }
+
+
+    private ApiResponse getStatusResponse(
+        Optional<IngestStatus> ingestStatus, 
+        UUID txid, 
+        ZonedDateTime requestReceivedAt
+    ) {
+        if (ingestStatus.isEmpty()) {
+            return ApiResponse.builder()
+                              .code(HttpStatus.NOT_FOUND.value())
+                              .serverMessage("no upload found")
+                              .txid(txid)
+                              .requestReceivedAt(requestReceivedAt.toString())
+                              .build();
+        }
+
+        // Map.of() won't take nulls 
+        Map<String, Object> data = new HashMap<>();
+        data.put("txid", ingestStatus.get().txid());
+        data.put("eventPurl", ingestStatus.get().eventPurl());
+        data.put("stage", ingestStatus.get().stage());
+        data.put("code", ingestStatus.get().code());
+        data.put("error", ingestStatus.get().error());
+        data.put("updatedAt", ingestStatus.get().updatedAt().toString());
+
+        return ApiResponse.builder()
+                          .code(HttpStatus.OK.value())
+                          .txid(txid)
+                          .requestReceivedAt(requestReceivedAt.toString())
+                          .data(data)
+                          .build();
+    }
+
+}
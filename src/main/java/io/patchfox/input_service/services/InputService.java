@@ -4,6 +4,7 @@ package io.patchfox.input_service.services;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -14,6 +15,8 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,6 +26,8 @@ import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.repository.query.Param;
@@ -38,9 +43,17 @@ import com.github.packageurl.PackageURL;
 import io.patchfox.db_entities.entities.Dataset;
 import io.patchfox.db_entities.entities.Datasource;
 import io.patchfox.db_entities.entities.DatasourceEvent;
+import io.patchfox.input_service.components.BundleStagingStore;
 import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.IngestCostMeter;
+import io.patchfox.input_service.components.IngestEventStream;
+import io.patchfox.input_service.components.IngestMetrics;
+import io.patchfox.input_service.components.KeyedOrderedExecutor;
 import io.patchfox.input_service.controllers.InputController;
 import io.patchfox.input_service.helpers.HibernateHelper;
+import io.patchfox.input_service.jfr.DataFileProcessEvent;
+import io.patchfox.input_service.jfr.PackagePersistEvent;
+import io.patchfox.input_service.jfr.ZipExtractionEvent;
 import io.patchfox.input_service.kafka.KafkaBeans;
 import io.patchfox.input_service.repositories.DatasetRepository;
 import io.patchfox.input_service.repositories.DatasourceEventRepository;
@@ -58,12 +71,15 @@ import io.patchfox.package_utils.util.Pair;
 import lombok.extern.slf4j.Slf4j;
 
 import net.lingala.zip4j.ZipFile;
+import net.lingala.zip4j.model.FileHeader;
 
 
 @Service
 @Slf4j
 public class InputService {
 
+    public static final String ACCESS_LOGGER_NAME = "patchfox.access";
+
     @Autowired
     private HibernateHelper hibernateHelper;
 
@@ -82,9 +98,33 @@ public class InputService {
     @Autowired
     EnvironmentComponent env;
 
+    @Autowired
+    private KeyedOrderedExecutor orderedExecutor;
+
+    @Autowired
+    private IngestEventStream ingestEventStream;
+
+    @Autowired
+    private IngestStatusService ingestStatusService;
+
+    @Autowired
+    private BundleStagingStore bundleStagingStore;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Autowired
+    private IngestCostMeter ingestCostMeter;
+
+    // one logfmt line per ingested event, on its own logger so it can be routed and kept separately 
+    private static final Logger accessLog = LoggerFactory.getLogger(ACCESS_LOGGER_NAME);
+
 
 
     /**
+     * entry point for git events. events for the same datasource are ingested one at a time and in the order they 
+     * arrived, regardless of whether they came in over HTTP or Kafka or on which listener thread. events for different
+     * datasources are ingested in parallel.
      * 
      * @param txid
      * @param requestReceivedAt
@@ -98,6 +138,96 @@ public class InputService {
         PackageURL datasourceEvent,
         MultipartFile eventFileData
     ) {
+        var datasourcePurl = datasourceEvent.getCoordinates();
+        var eventPurl = datasourceEvent.toString();
+        ingestStatusService.recordReceived(txid, eventPurl);
+
+        // the calling thread does the upload staging and the ordered executor worker does the ingest. the request's
+        // cost is the two added together - unless the ingest ran inline on this thread, in which case it's all here.
+        var callerStart = ingestCostMeter.snapshot();
+        var workerCost = new AtomicReference<>(IngestCostMeter.Cost.NONE);
+        Integer code = null;
+        try {
+            var apiResponse = orderedExecutor.submitAndWait(
+                datasourcePurl, 
+                () -> {
+                    var workerStart = ingestCostMeter.snapshot();
+                    try {
+                        return ingestGitEvent(txid, requestReceivedAt, datasourceEvent, eventFileData);
+                    } finally {
+                        if (workerStart.threadId() != callerStart.threadId()) { 
+                            workerCost.set(ingestCostMeter.since(workerStart)); 
+                        }
+                    }
+                }
+            );
+            code = apiResponse.getCode();
+
+            // see ingestGitEvent() for why accepted events are either INGESTING or READY_FOR_PROCESSING 
+            var acceptedStage = (env.getReorderWindowSeconds() > 0) 
+                ? DatasourceEvent.Status.INGESTING 
+                : DatasourceEvent.Status.READY_FOR_PROCESSING;
+            ingestStatusService.recordOutcome(txid, eventPurl, apiResponse, acceptedStage);
+            return apiResponse;
+        } catch (RuntimeException e) {
+            ingestMetrics.recordOutcome(IngestMetrics.Outcome.ERROR, datasourceEvent.getNamespace());
+            ingestStatusService.recordFailure(txid, eventPurl, e);
+            retainForReprocessing(eventPurl, eventFileData);
+            throw e;
+        } finally {
+            var cost = ingestCostMeter.since(callerStart).plus(workerCost.get());
+            ingestCostMeter.record(datasourceEvent.getVersion(), cost);
+            accessLog.info(
+                "txid={} event=\"{}\" datasource_type={} code={} bundle_bytes={} elapsed_ms={} allocated_bytes={} cpu_ms={}",
+                txid,
+                eventPurl,
+                datasourceEvent.getVersion(),
+                (code == null) ? HttpStatus.INTERNAL_SERVER_ERROR.value() : code,
+                eventFileData.getSize(),
+                Duration.between(requestReceivedAt, ZonedDateTime.now(requestReceivedAt.getZone())).toMillis(),
+                cost.allocatedBytes(),
+                TimeUnit.NANOSECONDS.toMillis(cost.cpuNanos())
+            );
+        }
+    }
+
+
+    /**
+     * keeps the bundle for an event whose ingest failed on our side so ReprocessService can retry it without a 
+     * re-upload. once the retained bundles add up to the configured max the rest aren't kept 
+     * 
+     * @param eventPurl
+     * @param eventFileData
+     */
+    private void retainForReprocessing(String eventPurl, MultipartFile eventFileData) {
+        if (env.getRetainFailedBundleHours() <= 0) { return; }
+        try {
+            var retainedBytes = bundleStagingStore.getRetainedBytes() + eventFileData.getSize();
+            if (retainedBytes > env.getRetainFailedMaxSize().toBytes()) {
+                log.warn("not retaining bundle for failed event {} - retained bundles are at max size", eventPurl);
+                return;
+            }
+            bundleStagingStore.retain(eventPurl, eventFileData.getInputStream());
+        } catch (IOException e) {
+            log.warn("unable to retain bundle for failed event {}", eventPurl, e);
+        }
+    }
+
+
+    /**
+     * 
+     * @param txid
+     * @param requestReceivedAt
+     * @param datasourceEvent
+     * @param eventFileData
+     * @return
+     */
+    ApiResponse ingestGitEvent(
+        UUID txid, 
+        ZonedDateTime requestReceivedAt,
+        PackageURL datasourceEvent,
+        MultipartFile eventFileData
+    ) {
 
         //
         // extract what we need.
@@ -121,7 +251,12 @@ public class InputService {
         // update dataset db record as needed.
         //
         //var datasetRecord = hibernateHelper.fetchOrMakeAndFetchDatasetRecord(datasourceDomain, requestReceivedAt, txid);
-        var datasetRecord = datasetRepository.createAndFetchOrFetchDataset(datasourceDomain, requestReceivedAt, txid);
+        var fetchedDatasetRecord = ingestMetrics.observe(
+            IngestMetrics.Stage.UPSERT_DATASET,
+            datasourceDomain,
+            txid,
+            () -> datasetRepository.createAndFetchOrFetchDataset(datasourceDomain, requestReceivedAt, txid)
+        );
 
         //
         // grab the datasource db record corresponding to this input. if one does not exist - make it 
@@ -143,49 +278,48 @@ public class InputService {
         //     ); 
         
 
-        var datasourceRecord = 
-            datasourceRepository.createAndFetchOrFetchDatasource(
-                setToSqlArrayString(Set.of(datasetRecord.getId())),
-                datasourceCommitBranch,
-                datasourceDomain,
-                requestReceivedAt,
-                txid,
-                datasourcePackedName,
-                datasourcePurl,
-                datasourceType,
-                ","
-            );
-
-        // check to see if we need to add a new record to the Dataset table 
-        // remember - "Datasets" are containers for "Datasources"
-        //            "Datasources" are containers for "DataSourceEvents" 
-        var matchList = datasetRecord.getDatasources()
-                                     .stream()
-                                     .filter(datasource -> datasource.getName().equals(datasourceName))
-                                     .toList();
-
-        if (matchList.isEmpty()) {
-            datasetRecord.getDatasources().add(datasourceRecord);
-            datasetRecord = datasetRepository.save(datasetRecord);
-        }
-
-        // now we are certain the record exists in dataset table we can update timestamp
-        datasetRecord.setUpdatedAt(requestReceivedAt);
-        datasetRecord = datasetRepository.save(datasetRecord);
+        var upsertedDatasourceRecord = ingestMetrics.observe(
+            IngestMetrics.Stage.UPSERT_DATASOURCE,
+            datasourceDomain,
+            txid,
+            () -> datasourceRepository.createAndFetchOrFetchDatasource(
+                      setToSqlArrayString(Set.of(fetchedDatasetRecord.getId())),
+                      datasourceCommitBranch,
+                      datasourceDomain,
+                      requestReceivedAt,
+                      txid,
+                      datasourcePackedName,
+                      datasourcePurl,
+                      datasourceType,
+                      ","
+                  )
+        );
+
+        var datasetRecord = ingestMetrics.observe(
+            IngestMetrics.Stage.LINK_DATASOURCE,
+            datasourceDomain,
+            txid,
+            () -> linkDatasource(fetchedDatasetRecord, upsertedDatasourceRecord, datasourceName, requestReceivedAt)
+        );
+        var datasourceRecord = upsertedDatasourceRecord;
 
 
         //
         // attempt to serialize the file data to safe tmp dir on filesystem
         //
         
+        ingestMetrics.recordBundleSize(datasourceDomain, eventFileData.getSize());
         Pair<Path, Path> serializedPathPair = new Pair<>(null, null);
         try {
-            serializedPathPair = FileHelpers.safeSerializeFile(
-                                                 eventFileData.getOriginalFilename(), 
-                                                 eventFileData.getInputStream()
-                                             );
+            serializedPathPair = ingestMetrics.observe(
+                IngestMetrics.Stage.SERIALIZE_FILE,
+                datasourceDomain,
+                txid,
+                () -> FileHelpers.safeSerializeFile(eventFileData.getOriginalFilename(), eventFileData.getInputStream())
+            );
         } catch (IOException e) {
             log.error("something went wrong serializing caller supplied file: {0}", eventFileData.getOriginalFilename());
+            ingestMetrics.recordOutcome(IngestMetrics.Outcome.MALFORMED, datasourceDomain);
             var lastEventReceivedStatus = HttpStatus.BAD_REQUEST.getReasonPhrase();
             return hibernateHelper.recordErrorAndGetApiResponse(
                 datasourceRecord,
@@ -216,7 +350,13 @@ public class InputService {
 
         try {
 
-            Map<String, List<DataFile>> projectsMap = processZipFile(serializedPathPair);
+            final var zipPathPair = serializedPathPair;
+            Map<String, List<DataFile>> projectsMap = ingestMetrics.observe(
+                IngestMetrics.Stage.UNZIP,
+                datasourceDomain,
+                txid,
+                () -> processZipFile(zipPathPair, txid)
+            );
 
             // there's only going to be one key in there. These methods were ported from the alpha version where
             // things worked by uploading a zip file with [n] projects in it. As such the name of each project was baked 
@@ -230,7 +370,13 @@ public class InputService {
             var key = projectsMap.keySet().stream().findAny().get();
             projectsMap = Map.of(datasourceName, projectsMap.get(key));
             log.debug("projectsMap: {}", projectsMap);
-            PackageWrapper p = parseProjectsMap(datasourceEvent, projectsMap).get(0);
+            final var datasourceProjectsMap = projectsMap;
+            PackageWrapper p = ingestMetrics.observe(
+                IngestMetrics.Stage.PARSE,
+                datasourceDomain,
+                txid,
+                () -> parseProjectsMap(datasourceEvent, datasourceProjectsMap, txid).get(0)
+            );
             log.info("completed parsing for project: {}", p.getPurl());
 
 
@@ -238,9 +384,20 @@ public class InputService {
              * if processing was successful we store the event  
              */
             var mapper = new ObjectMapper().findAndRegisterModules();
-            var payloadBytes = mapper.writeValueAsBytes(p);
+            var payloadBytes = ingestMetrics.observe(
+                IngestMetrics.Stage.SERIALIZE_PAYLOAD,
+                datasourceDomain,
+                txid,
+                () -> mapper.writeValueAsBytes(p)
+            );
             datasourceEventRecord.setPayload(payloadBytes);
-            datasourceEventRecord.setStatus(DatasourceEvent.Status.READY_FOR_PROCESSING);
+
+            // if the reorder buffer is on the event stays INGESTING until its window has elapsed. ScheduledTasks then
+            // releases held events in commitDateTime order. 
+            var holdForReorder = env.getReorderWindowSeconds() > 0;
+            if ( !holdForReorder ) {
+                datasourceEventRecord.setStatus(DatasourceEvent.Status.READY_FOR_PROCESSING);
+            }
 
             // update package table 
             // we're safe to do this at this point because we know for sure we're dealing with the one SBOM the caller
@@ -254,7 +411,12 @@ public class InputService {
             // check to ensure the SBOM is populated with packages. if it isn't we don't want to serialize it because 
             // it (1) is more stuff to process that won't result in value (2) it messes with the analyze-service in 
             // subtle ways.
-            if (((SbomPackageData<SyftSbomPackageData>)sbom).getDependencyTree().getAllChildren(true).isEmpty()) {
+            var packageCount = ((SbomPackageData<SyftSbomPackageData>)sbom).getDependencyTree()
+                                                                          .getAllChildren(true)
+                                                                          .size();
+            ingestMetrics.recordPackageCount(datasourceDomain, packageCount);
+            if (packageCount == 0) {
+                ingestMetrics.recordOutcome(IngestMetrics.Outcome.EMPTY_SBOM, datasourceDomain);
                 return ApiResponse.builder()
                                   .code(HttpStatus.BAD_REQUEST.value())
                                   .serverMessage(
@@ -275,11 +437,35 @@ public class InputService {
             // );
 
             try {
-                datasourceEventRecord = datasourceEventRepository.save(datasourceEventRecord);
-                hibernateHelper.savePackages(
-                    datasourceEventRecord.getId(), 
-                    (SbomPackageData)sbom, 
-                    requestReceivedAt
+                final var unsavedDatasourceEventRecord = datasourceEventRecord;
+                datasourceEventRecord = ingestMetrics.observe(
+                    IngestMetrics.Stage.SAVE_PACKAGES,
+                    datasourceDomain,
+                    txid,
+                    () -> {
+                        var persistEvent = new PackagePersistEvent();
+                        persistEvent.begin();
+                        var succeeded = false;
+                        try {
+                            var savedRecord = datasourceEventRepository.save(unsavedDatasourceEventRecord);
+                            hibernateHelper.savePackages(
+                                savedRecord.getId(), 
+                                (SbomPackageData)sbom, 
+                                requestReceivedAt
+                            );
+                            succeeded = true;
+                            return savedRecord;
+                        } finally {
+                            persistEvent.end();
+                            if (persistEvent.shouldCommit()) {
+                                persistEvent.txid = txid.toString();
+                                persistEvent.eventPurl = unsavedDatasourceEventRecord.getPurl();
+                                persistEvent.packageCount = packageCount;
+                                persistEvent.succeeded = succeeded;
+                                persistEvent.commit();
+                            }
+                        }
+                    }
                 );
             } catch (DataIntegrityViolationException e) {
                 var purl = p.getPurl().toString();
@@ -287,14 +473,18 @@ public class InputService {
                 
                 var existingDatasourceEventRecord = datasourceEventRepository.findAllByPurl(purl).get(0);
                 
-                // check to see if existing event recorded an error. if so allow reprocessing
-                if (existingDatasourceEventRecord.getStatus() == DatasourceEvent.Status.PROCESSING_ERROR) {
-                    log.info("allowing reprocessing of event because previous status was PROCESSING_ERROR");
+                // check to see if existing event recorded an error. if so allow reprocessing. same goes for a row left
+                // behind by an earlier attempt at this very request that failed transiently and is being retried
+                if (
+                    existingDatasourceEventRecord.getStatus() == DatasourceEvent.Status.PROCESSING_ERROR
+                    || txid.equals(existingDatasourceEventRecord.getTxid())
+                ) {
+                    log.info("allowing reprocessing of event because previous attempt failed");
                     datasourceEventRepository.delete(existingDatasourceEventRecord);
                     datasourceEventRecord = datasourceEventRepository.save(datasourceEventRecord); 
                 // otherwise leave existing event alone and return 400 to caller
                 } else {
-
+                    ingestMetrics.recordOutcome(IngestMetrics.Outcome.DUPLICATE, datasourceDomain);
                     return ApiResponse.builder()
                                       .code(HttpStatus.BAD_REQUEST.value())
                                       .serverMessage(
@@ -311,40 +501,44 @@ public class InputService {
             }
             
                 
-            // add event to datasource record and set ready flag 
-            //
-            // don't override INITIALIZING because we need to make sure we've gathered as much historical data as 
-            // possible before processing - to reduce pipeline churn. 
-            //
-            // don't override PROCESSING because we don't want to kick off a new processing job until the whatever
-            // data is currently in the queue for processing has been processed. 
-            if (
-                datasourceRecord.getStatus() != Datasource.Status.INITIALIZING
-                && datasourceRecord.getStatus() != Datasource.Status.PROCESSING
-                && datasourceRecord.getStatus() != Datasource.Status.READY_FOR_NEXT_PROCESSING
-            ) {
-                datasourceRecord.setStatus(Datasource.Status.READY_FOR_PROCESSING);
-            }
-            datasourceRecord = datasourceRepository.save(datasourceRecord);
-
-            // same for dataset
-            if (
-                datasetRecord.getStatus() != Dataset.Status.INITIALIZING
-                && datasetRecord.getStatus() != Dataset.Status.PROCESSING
-            ) {
-                datasetRecord.setStatus(Dataset.Status.READY_FOR_PROCESSING);
+            // add event to datasource record and set ready flag. held events get this treatment when they're 
+            // released from the reorder buffer instead.
+            if ( !holdForReorder ) {
+                final var unsavedDatasourceRecord = datasourceRecord;
+                final var unsavedDatasetRecord = datasetRecord;
+                var savedRecords = ingestMetrics.observe(
+                    IngestMetrics.Stage.SAVE_STATUS,
+                    datasourceDomain,
+                    txid,
+                    () -> new Pair<>(
+                        hibernateHelper.markDatasourceReadyForProcessing(unsavedDatasourceRecord),
+                        hibernateHelper.markDatasetReadyForProcessing(unsavedDatasetRecord)
+                    )
+                );
+                // the catch below records errors against datasourceRecord so it has to be the saved one 
+                datasourceRecord = savedRecords.getLeft();
+                datasetRecord = savedRecords.getRight();
             }
-            datasetRecord = datasetRepository.save(datasetRecord);
 
             //
             // and we're out 
             //
 
         } catch (Exception e) {
+            // transient failures (db briefly unreachable etc) aren't the event's fault. let them out so a kafka 
+            // caller's request goes to the retry topic instead of the event being marked as failed 
+            if (KafkaBeans.isTransient(e)) {
+                log.warn("transient failure while processing event {}: {}", datasourceEvent, e.toString());
+                if (e instanceof RuntimeException re) { throw re; }
+                throw new IllegalStateException(e);
+            }
+
             log.error("caught exception while processing: ", e);
 
-            // this is probably due to the caller attempting to upload the same event more than once 
+            // this is probably due to the caller attempting to upload the same event more than once. nothing a 
+            // reprocess of the same bundle would fix so it isn't retained 
             if (e instanceof IllegalArgumentException || e instanceof DataIntegrityViolationException) {
+                ingestMetrics.recordOutcome(IngestMetrics.Outcome.MALFORMED, datasourceDomain);
                 var lastEventReceivedStatus = HttpStatus.BAD_REQUEST.getReasonPhrase();
                 // no need to update dataset "updatedAt" field as we did so already 
                 return hibernateHelper.recordErrorAndGetApiResponse(
@@ -354,6 +548,8 @@ public class InputService {
                     requestReceivedAt
                 );
             } else {
+                retainForReprocessing(datasourceEvent.toString(), eventFileData);
+                ingestMetrics.recordOutcome(IngestMetrics.Outcome.ERROR, datasourceDomain);
                 var lastEventReceivedStatus = HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase();
                 // no need to update dataset "updatedAt" field as we did so already 
                 return hibernateHelper.recordErrorAndGetApiResponse(
@@ -369,7 +565,15 @@ public class InputService {
             FileHelpers.safeDeletePath(serializedPathPair.getLeft());
         }
 
-        // bye
+        // bye. only now that the event row is saved has the event actually been accepted
+        ingestEventStream.publish(
+            IngestEventStream.EventType.EVENT_ACCEPTED,
+            datasourceDomain,
+            datasourcePurl,
+            datasourceEventRecord.getStatus().toString(),
+            txid
+        );
+        ingestMetrics.recordOutcome(IngestMetrics.Outcome.ACCEPTED, datasourceDomain);
         return ApiResponse.builder()
                           .code(HttpStatus.ACCEPTED.value())
                           .txid(txid)
@@ -378,6 +582,40 @@ public class InputService {
     }
 
 
+    /**
+     * adds datasourceRecord to datasetRecord if it isn't already there and bumps the dataset's updatedAt
+     * 
+     * @param datasetRecord
+     * @param datasourceRecord
+     * @param datasourceName
+     * @param requestReceivedAt
+     * @return the saved dataset record
+     */
+    private Dataset linkDatasource(
+        Dataset datasetRecord, 
+        Datasource datasourceRecord, 
+        String datasourceName, 
+        ZonedDateTime requestReceivedAt
+    ) {
+        // check to see if we need to add a new record to the Dataset table 
+        // remember - "Datasets" are containers for "Datasources"
+        //            "Datasources" are containers for "DataSourceEvents" 
+        var matchList = datasetRecord.getDatasources()
+                                     .stream()
+                                     .filter(datasource -> datasource.getName().equals(datasourceName))
+                                     .toList();
+
+        if (matchList.isEmpty()) {
+            datasetRecord.getDatasources().add(datasourceRecord);
+            datasetRecord = datasetRepository.save(datasetRecord);
+        }
+
+        // now we are certain the record exists in dataset table we can update timestamp
+        datasetRecord.setUpdatedAt(requestReceivedAt);
+        return datasetRepository.save(datasetRecord);
+    }
+
+
     /**
      * takes location of serialized data (uploaded by caller), unpacks the file, and processes valid bundles of 
      * project (code repository) metadata into a map pairing project to a list of pairs where each pair<L, R> is
@@ -410,9 +648,10 @@ public class InputService {
      * 
      * 
      * @param serializedPathPair
+     * @param txid
      * @return
      */
-    Map<String, List<DataFile>> processZipFile(Pair<Path, Path> serializedPathPair) {
+    Map<String, List<DataFile>> processZipFile(Pair<Path, Path> serializedPathPair, UUID txid) {
         Path workingDirPath = serializedPathPair.getLeft();
         Path zipFilePath = serializedPathPair.getRight();
 
@@ -426,8 +665,20 @@ public class InputService {
 
         // try-with-resources to ensure ZipFile is closed()
         // https://docs.oracle.com/javase/tutorial/essential/exceptions/tryResourceClose.html
+        var extractionEvent = new ZipExtractionEvent();
+        extractionEvent.begin();
         try (ZipFile zipFile = new ZipFile(zipFilePath.toString());) {
             zipFile.extractAll(workingDirPath.toString());
+
+            extractionEvent.end();
+            if (extractionEvent.shouldCommit()) {
+                var fileHeaders = zipFile.getFileHeaders();
+                extractionEvent.txid = txid.toString();
+                extractionEvent.bundleBytes = zipFile.getFile().length();
+                extractionEvent.extractedFiles = fileHeaders.size();
+                extractionEvent.extractedBytes = fileHeaders.stream().mapToLong(FileHeader::getUncompressedSize).sum();
+                extractionEvent.commit();
+            }
         } catch (IOException e) {
             log.error("something went wrong unpacking the zip file", e);
             throw new IllegalArgumentException();
@@ -648,9 +899,14 @@ public class InputService {
      *      directory.
      * 
      * @param projectsMap
+     * @param txid
      * @return
      */
-    List<PackageWrapper> parseProjectsMap(PackageURL eventDataSource, Map<String, List<DataFile>> projectsMap) {    
+    List<PackageWrapper> parseProjectsMap(
+        PackageURL eventDataSource, 
+        Map<String, List<DataFile>> projectsMap, 
+        UUID txid
+    ) {    
         List<PackageWrapper> rv = new ArrayList<>();
 
         for (String key : projectsMap.keySet()) {
@@ -669,6 +925,10 @@ public class InputService {
             List<DataFile> projectData = projectsMap.get(key);
             for (DataFile dataFile : projectData) {    
 
+                var processEvent = new DataFileProcessEvent();
+                processEvent.begin();
+                var packageCount = 0;
+                var succeeded = false;
                 try {
                     String className = dataFile.returns();
                     log.info("processing data file type: {}", dataFile.getFileType());
@@ -680,14 +940,34 @@ public class InputService {
                             rootNode = (PackageWrapper)dataFile.process().get();
                             break;
                         case (PackageData.CLASSNAME):
-                            dependencyDataList.add((PackageData)dataFile.process().get());
+                            var packageData = (PackageData)dataFile.process().get();
+                            dependencyDataList.add(packageData);
+                            if (
+                                processEvent.isEnabled() 
+                                && packageData.getPackageDataType() == PackageData.PackageDataType.SBOM
+                            ) {
+                                packageCount = ((SbomPackageData<SyftSbomPackageData>)packageData).getDependencyTree()
+                                                                                                  .getAllChildren(true)
+                                                                                                  .size();
+                            }
                             break;
                         default:
                             log.warn("dataFile: {} returns unrecognized type: {}", dataFile.getFileName(), className);
                             break;
                     }
+                    succeeded = true;
                 } catch (IllegalArgumentException | IOException | NoSuchElementException e) {
                     log.warn("caught unexpected exception {} while processing data file {}", e, dataFile.getFileName());                    
+                } finally {
+                    processEvent.end();
+                    if (processEvent.shouldCommit()) {
+                        processEvent.txid = txid.toString();
+                        processEvent.fileType = String.valueOf(dataFile.getFileType());
+                        processEvent.fileName = dataFile.getFileName();
+                        processEvent.packageCount = packageCount;
+                        processEvent.succeeded = succeeded;
+                        processEvent.commit();
+                    }
                 }
 
             }
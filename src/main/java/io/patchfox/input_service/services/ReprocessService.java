@@ -0,0 +1,343 @@
+package io.patchfox.input_service.services;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.patchfox.db_entities.entities.DatasourceEvent;
+import io.patchfox.input_service.components.BundleStagingStore;
+import io.patchfox.input_service.components.EnvironmentComponent;
+import io.patchfox.input_service.components.KeyedOrderedExecutor;
+import io.patchfox.input_service.controllers.InputController;
+import io.patchfox.input_service.helpers.HibernateHelper;
+import io.patchfox.input_service.repositories.DatasourceEventRepository;
+import io.patchfox.package_utils.json.ApiResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+
+/*
+ * Re-drives failed events from what we already hold rather than having CI upload them all again.
+ *
+ * An event that was ingested fine but failed downstream (PROCESSING_ERROR with a stored payload) is simply put back
+ * in the queue. An event whose ingest itself failed is ingested again from the bundle InputService retained when it
+ * failed. Anything else is skipped and reported - those do need a re-upload.
+ *
+ * Candidates are grouped by datasource and each datasource's events are worked through one at a time, oldest commit
+ * first, with datasources spread over a fixed number of threads. Requeues also go through KeyedOrderedExecutor so they
+ * don't interleave with live ingests for the same datasource.
+ */
+@Slf4j
+@Service
+public class ReprocessService {
+
+    public enum Outcome { REQUEUED, REINGESTED, SKIPPED, FAILED }
+
+    @Autowired
+    DatasourceEventRepository datasourceEventRepository;
+
+    @Autowired
+    HibernateHelper hibernateHelper;
+
+    @Autowired
+    InputService inputService;
+
+    @Autowired
+    BundleStagingStore bundleStagingStore;
+
+    @Autowired
+    KeyedOrderedExecutor orderedExecutor;
+
+    @Autowired
+    EnvironmentComponent env;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private ExecutorService workers;
+
+    // runs the reprocess itself so the caller gets an answer straight away. the run fans out onto workers
+    private ExecutorService runner;
+
+    // one bulk reprocess at a time. two overlapping runs would just trip over each other's events
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        runner = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "reprocess-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // parallelism is a deliberate limit on how hard one bulk reprocess leans on the db so it stays a fixed pool, 
+        // just of virtual threads 
+        if (env.isVirtualThreadsEnabled()) {
+            workers = Executors.newFixedThreadPool(
+                env.getReprocessParallelism(),
+                Thread.ofVirtual().name("reprocess-", 0).factory()
+            );
+            return;
+        }
+
+        var threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(
+            env.getReprocessParallelism(),
+            runnable -> {
+                var thread = new Thread(runnable, "reprocess-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        workers.shutdownNow();
+    }
+
+
+    /**
+     * starts a reprocess in the background. how it went is logged against txid once it's done
+     *
+     * @param domain only reprocess events in this domain. null for all
+     * @param datasourcePurl only reprocess events for this datasource. null for all
+     * @param limit max number of events to reprocess
+     * @param txid
+     * @param requestReceivedAt
+     * @return 202 if the reprocess was started, 409 if one is already running
+     */
+    public ApiResponse reprocess(
+        String domain,
+        String datasourcePurl,
+        int limit,
+        UUID txid,
+        ZonedDateTime requestReceivedAt
+    ) {
+        if ( !running.compareAndSet(false, true) ) {
+            return ApiResponse.builder()
+                              .code(HttpStatus.CONFLICT.value())
+                              .serverMessage("a reprocess is already running")
+                              .txid(txid)
+                              .requestReceivedAt(requestReceivedAt.toString())
+                              .build();
+        }
+
+        var purlPrefix = getPurlPrefix(domain, datasourcePurl);
+        try {
+            runner.submit(() -> {
+                try {
+                    runReprocess(purlPrefix, limit, txid);
+                } catch (Exception e) {
+                    log.error("reprocess {} failed", txid, e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("purlPrefix", purlPrefix);
+        data.put("limit", limit);
+        return ApiResponse.builder()
+                          .code(HttpStatus.ACCEPTED.value())
+                          .serverMessage("reprocess started. outcomes are logged when it's done")
+                          .txid(txid)
+                          .requestReceivedAt(requestReceivedAt.toString())
+                          .data(data)
+                          .build();
+    }
+
+
+    private void runReprocess(String purlPrefix, int limit, UUID txid) {
+        var startedAt = System.nanoTime();
+        log.info("begin reprocess {} of up to {} failed event(s) matching {}", txid, limit, purlPrefix);
+
+        // event purl -> id of its PROCESSING_ERROR record. bundles that never made it to a record have no id
+        Map<String, Long> candidates = new HashMap<>();
+        var eventPurls = new LinkedHashSet<String>();
+        List<DatasourceEvent> failedEvents = datasourceEventRepository.findAllByStatusAndPurlStartingWithOrderByCommitDateTimeAsc(
+            DatasourceEvent.Status.PROCESSING_ERROR,
+            purlPrefix,
+            Limit.of(limit)
+        );
+        for (var failedEvent : failedEvents) {
+            candidates.put(failedEvent.getPurl(), failedEvent.getId());
+            eventPurls.add(failedEvent.getPurl());
+        }
+
+        try {
+            bundleStagingStore.listRetained()
+                              .stream()
+                              .filter(eventPurl -> eventPurl.startsWith(purlPrefix))
+                              .sorted()
+                              .forEach(eventPurls::add);
+        } catch (IOException e) {
+            log.warn("unable to list retained bundles - only events with a stored payload will be reprocessed", e);
+        }
+
+        // one task per datasource that works through its events oldest commit first. the datasources themselves go in
+        // parallel. retained bundles have no record to order them by so everything is ordered by the commitdatetime 
+        // qualifier every event purl carries
+        Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+        for (var outcome : Outcome.values()) { counts.put(outcome, 0); }
+        Map<String, List<Candidate>> candidatesByDatasource = new LinkedHashMap<>();
+        for (var eventPurl : eventPurls.stream().limit(limit).toList()) {
+            PackageURL datasourceEvent;
+            try {
+                datasourceEvent = new PackageURL(eventPurl);
+            } catch (MalformedPackageURLException e) {
+                log.error("can't reprocess event with malformed purl {}", eventPurl);
+                recordOutcome(counts, Outcome.FAILED);
+                continue;
+            }
+            candidatesByDatasource.computeIfAbsent(datasourceEvent.getCoordinates(), k -> new ArrayList<>())
+                                  .add(new Candidate(eventPurl, datasourceEvent, candidates.get(eventPurl)));
+        }
+
+        var eventCount = counts.get(Outcome.FAILED);
+        List<Future<List<Outcome>>> futures = new ArrayList<>();
+        for (var datasourceCandidates : candidatesByDatasource.values()) {
+            datasourceCandidates.sort(
+                Comparator.comparing(Candidate::getCommitDateTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            );
+            eventCount += datasourceCandidates.size();
+            futures.add(workers.submit(() -> datasourceCandidates.stream().map(this::reprocessEvent).toList()));
+        }
+
+        for (var future : futures) {
+            List<Outcome> outcomes;
+            try {
+                outcomes = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("reprocess {} of a datasource's events failed", txid, e);
+                continue;
+            }
+            for (var outcome : outcomes) { recordOutcome(counts, outcome); }
+        }
+
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        var eventsPerSecond = (elapsedMillis == 0) ? 0 : eventCount / (elapsedMillis / 1000.0);
+        log.info(
+            "done reprocess {} of {} event(s) across {} datasource(s) in {}ms ({} events/s). outcomes: {}",
+            txid,
+            eventCount,
+            candidatesByDatasource.size(),
+            elapsedMillis,
+            String.format("%.2f", eventsPerSecond),
+            counts
+        );
+    }
+
+
+    private void recordOutcome(Map<Outcome, Integer> counts, Outcome outcome) {
+        counts.merge(outcome, 1, Integer::sum);
+        meterRegistry.counter("patchfox.reprocess.events", "outcome", outcome.toString()).increment();
+    }
+
+
+    private Outcome reprocessEvent(Candidate candidate) {
+        var eventPurl = candidate.eventPurl();
+        var datasourceEvent = candidate.datasourceEvent();
+        var datasourceEventId = candidate.datasourceEventId();
+
+        try {
+            // cheapest first - nothing to parse if the payload is still there
+            if (datasourceEventId != null) {
+                var requeued = orderedExecutor.submitAndWait(
+                    datasourceEvent.getCoordinates(),
+                    () -> hibernateHelper.requeueFromStoredPayload(datasourceEventId)
+                );
+                if (requeued) {
+                    bundleStagingStore.deleteRetained(eventPurl);
+                    return Outcome.REQUEUED;
+                }
+            }
+
+            var retainedBundle = bundleStagingStore.openRetained(eventPurl);
+            if (retainedBundle.isEmpty()) {
+                log.info("nothing stored to reprocess event {} from - it needs to be uploaded again", eventPurl);
+                return Outcome.SKIPPED;
+            }
+
+            var now = ZonedDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+            var apiResponse = 
+                inputService.handleGitEvent(UUID.randomUUID(), now, datasourceEvent, retainedBundle.get());
+            if ( !HttpStatus.valueOf(apiResponse.getCode()).is2xxSuccessful() ) {
+                log.warn("reingest of event {} failed again with code {}", eventPurl, apiResponse.getCode());
+                return Outcome.FAILED;
+            }
+
+            bundleStagingStore.deleteRetained(eventPurl);
+            return Outcome.REINGESTED;
+        } catch (RuntimeException e) {
+            // don't let one bad event take the rest of its datasource's events down with it
+            log.error("reprocess of event {} failed", eventPurl, e);
+            return Outcome.FAILED;
+        }
+    }
+
+
+    /*
+     * an event to reprocess. datasourceEventId is the id of its PROCESSING_ERROR record, null for a retained bundle 
+     * that never made it to one
+     */
+    private record Candidate(String eventPurl, PackageURL datasourceEvent, Long datasourceEventId) {
+
+        ZonedDateTime getCommitDateTime() {
+            var commitDateTime = datasourceEvent.getQualifiers() == null 
+                ? null 
+                : datasourceEvent.getQualifiers().get(InputController.COMMIT_DATETIME_QUALIFIER_KEY);
+            if (commitDateTime == null) { return null; }
+            try {
+                return ZonedDateTime.parse(commitDateTime);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+
+
+    private static String getPurlPrefix(String domain, String datasourcePurl) {
+        // event purls are the datasource purl plus qualifiers
+        if (datasourcePurl != null) { return datasourcePurl + "?"; }
+        if (domain != null) { return "pkg:generic/" + domain + "/"; }
+        return "pkg:generic/";
+    }
+
+}
@@ -2,16 +2,18 @@ package io.patchfox.input_service.services;
 
 import java.net.URI;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.apache.catalina.connector.Response;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
@@ -32,11 +34,13 @@ public class RestInfoService {
     @Autowired
     EnvironmentComponent env;
 
-    @Autowired
-    private Jackson2ObjectMapperBuilder mapperBuilder;
+    // resource signature -> handler method and verb -> paths. see buildRegistry()
+    private volatile Map<String, HandlerMethod> handlerMethodsBySignature;
+    private volatile Map<String, Object> restInfo;
 
+    // qualified because actuator registers its own RequestMappingHandlerMapping for endpoint controllers 
     @Autowired
-    public RestInfoService(RequestMappingHandlerMapping handlerMapping) {
+    public RestInfoService(@Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping) {
         this.handlerMapping = handlerMapping;
     }
 
@@ -65,40 +69,18 @@ public class RestInfoService {
      * @throws JsonProcessingException 
      */
     public Map<String, Object> getRestInfo() throws JsonProcessingException { 
-        Map<String, List<String>> rv_tmp = new HashMap<>();
-
-        for (var key : handlerMapping.getHandlerMethods().keySet()) {
-            var method = key.getMethodsCondition().toString();
-            // because we get something like "[GET]" and we want just "GET"
-            method = trimMethod(method);
-            // now let's make extra sure we've parsed it correctly 
-            var httpMethod = HttpMethod.valueOf(method);
-            // to catch the internal /error mapping that has no verb associated with it
-            if (httpMethod == null || httpMethod.toString().isEmpty()) { continue; }
-            var pathSet = key.getPatternValues();
-            if (rv_tmp.containsKey(method)) {
-                rv_tmp.get(method).addAll(pathSet.stream().toList());
-            } else {
-                rv_tmp.put(method, pathSet.stream().collect(Collectors.toList()));
-            }                                
-        }
-
-        Map<String, Object> rv = new HashMap<>();
-        var mapper = mapperBuilder.build();
-        for (var entry : rv_tmp.entrySet()) {
-            rv.put(
-                entry.getKey(), 
-                entry.getValue()
-                //mapper.writeValueAsString(entry.getValue())
-                // entry.getValue()
-                //      .stream()
-                //      .map(Object::toString)
-                //      .collect(Collectors.joining(",")
-                //)
-            );
-        }
+        if (restInfo == null) { buildRegistry(); }
+        return restInfo;
+    }
 
-        return rv;
+    /**
+     * returns a map of resource signature (ex "GET_/api/v1/ping") to the handler method that services it.
+     * 
+     * @return
+     */
+    public Map<String, HandlerMethod> getHandlerMethodsBySignature() {
+        if (handlerMethodsBySignature == null) { buildRegistry(); }
+        return handlerMethodsBySignature;
     }
 
     /**
@@ -107,36 +89,42 @@ public class RestInfoService {
      * @return
      */
     public HandlerMethod getHandlerFor(Pair<ApiRequest.httpVerb, URI> requestPair) throws NullPointerException {
-        HandlerMethod rv = null;
         log.debug("method is: {}", requestPair.getLeft());
         log.debug("signature is: {}", requestPair.getRight());
 
-        for (var entry : handlerMapping.getHandlerMethods().entrySet()) {
-            var method = entry.getKey().getMethodsCondition().toString();
-            // because we get something like "[GET]" and we want just "GET"
-            method = trimMethod(method);
-            var httpMethod = HttpMethod.valueOf(method).toString();
-            log.debug("httpmethod is: {}", httpMethod);
-            log.debug("patternvalues is: {}", entry.getKey().getPatternValues());
-            if ( !requestPair.getLeft().toString().equals(httpMethod) ) { continue; }
-            if ( !entry.getKey().getPatternValues().contains(requestPair.getRight().toString()) ) { continue; }
-            rv = entry.getValue();
-        }    
-
+        var rv = getHandlerMethodsBySignature().get(requestPair.getLeft() + "_" + requestPair.getRight());
         if (rv == null) { throw new NullPointerException(); }
         return rv;
     }
 
     /**
-     * 
-     * @param method
-     * @return
+     * handler mappings don't change once the context is up so we walk them exactly once and serve everything else 
+     * from what we build here. 
      */
-    public String trimMethod(String method) {
-        if (method.charAt(0) == '[') {
-            var methodSize = method.length();
-            return method.substring(1, methodSize -1);
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void buildRegistry() {
+        if (handlerMethodsBySignature != null) { return; }
+
+        Map<String, HandlerMethod> handlers = new HashMap<>();
+        Map<String, List<String>> pathsByMethod = new HashMap<>();
+        for (var entry : handlerMapping.getHandlerMethods().entrySet()) {
+            // the internal /error mapping has no verb associated with it so it falls out here 
+            for (var method : entry.getKey().getMethodsCondition().getMethods()) {
+                var paths = pathsByMethod.computeIfAbsent(method.name(), k -> new ArrayList<>());
+                for (var path : entry.getKey().getPatternValues()) {
+                    handlers.put(method.name() + "_" + path, entry.getValue());
+                    paths.add(path);
+                }
+            }
+        }
+
+        Map<String, Object> info = new HashMap<>();
+        for (var entry : pathsByMethod.entrySet()) {
+            info.put(entry.getKey(), List.copyOf(entry.getValue()));
         }
-        return method;
+
+        log.info("registered resource signatures: {}", handlers.keySet());
+        restInfo = Collections.unmodifiableMap(info);
+        handlerMethodsBySignature = Collections.unmodifiableMap(handlers);
     }
 }
@@ -219,3 +219,47 @@ RETURNS bigint AS '
         RETURN package_pk;
     END;
 ' LANGUAGE PLPGSQL;
+
+
+-- responses to requests that have already been serviced. lets a redelivered Kafka record be answered without redoing
+-- the work. rows are purged by ScheduledTasks once they're older than patchfox.kafka.request.dedup.ttl-minutes 
+CREATE TABLE IF NOT EXISTS processed_request (
+    txid uuid NOT NULL,
+    resource_signature varchar NOT NULL,
+    response text NOT NULL,
+    completed_at timestamptz NOT NULL,
+    PRIMARY KEY (txid, resource_signature)
+);
+
+CREATE INDEX IF NOT EXISTS processed_request_completed_at_idx ON processed_request (completed_at);
+
+
+-- READY_FOR_PROCESSING transitions waiting to be relayed to Kafka. written in the same transaction as the status 
+-- change. claimed_until is set while a relay pass is sending the row. see OutboxRelay 
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id bigserial PRIMARY KEY,
+    aggregate_key varchar NOT NULL,
+    txid uuid,
+    payload text NOT NULL,
+    created_at timestamptz NOT NULL,
+    claimed_until timestamptz,
+    published_at timestamptz
+);
+
+CREATE INDEX IF NOT EXISTS outbox_event_unpublished_idx ON outbox_event (id) WHERE published_at IS NULL;
+
+
+-- how long each event took to become processable - ie both it and its datasource READY_FOR_PROCESSING. one row per 
+-- event, written the first time that happens. see IngestLatencyHelper. rows are purged by ScheduledTasks once they're
+-- older than patchfox.ingest.latency.retention-days
+CREATE TABLE IF NOT EXISTS ingest_latency (
+    datasource_event_id bigint PRIMARY KEY,
+    datasource_purl varchar NOT NULL,
+    domain varchar NOT NULL,
+    datasource_type varchar NOT NULL,
+    commit_to_ready_ms bigint NOT NULL,
+    received_to_ready_ms bigint NOT NULL,
+    ready_at timestamptz NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS ingest_latency_ready_at_idx ON ingest_latency (ready_at);
@@ -0,0 +1,264 @@
+package io.patchfox.input_service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+
+/*
+ * builds event bundles the way CI uploads them - one directory per project holding a syft sbom, a git blame annotated
+ * build file, and the ETL build metadata - entirely from the arguments so every run of a benchmark or load test 
+ * works with the same bytes.
+ *
+ * the file names are whatever package-utils' DataFile recognizes. if that changes, point these at the new names with
+ * -Dpatchfox.bench.sbom-file=... etc rather than editing the benchmarks.
+ */
+public final class SyntheticBundle {
+
+    public static final String SBOM_FILE_NAME = System.getProperty("patchfox.bench.sbom-file", "syft-sbom.json");
+    public static final String BLAME_FILE_NAME = System.getProperty("patchfox.bench.blame-file", "pom.xml.blame");
+    public static final String METADATA_FILE_NAME = System.getProperty(
+        "patchfox.bench.metadata-file",
+        "etl-build-metadata.json"
+    );
+
+    public static final String BUNDLE_FILE_NAME = "bundle.zip";
+
+    public static final String DOMAIN = "bench";
+
+    // each package depends on up to this many others. keeps the graph a few levels deep like a real maven build
+    private static final int FAN_OUT = 8;
+
+    private static final String COMMIT_HASH = "3f9a1c0e5b7d2468ace13579bdf02468ace13579";
+    private static final String COMMIT_DATE_TIME = "2024-06-01T12:00:00Z";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private SyntheticBundle() {}
+
+
+    /**
+     *
+     * @param projectName
+     * @return DatasourceEvent purl a bundle for projectName would be uploaded with
+     */
+    public static String eventPurl(String projectName) {
+        return "pkg:generic/" + DOMAIN + "/" + projectName + "::main@maven"
+            + "?commitHash=" + COMMIT_HASH 
+            + "&commitDatetime=" + COMMIT_DATE_TIME;
+    }
+
+
+    /**
+     *
+     * @param index
+     * @return name of the index'th project in a bundle
+     */
+    public static String projectName(int index) {
+        return String.format("project-%03d", index);
+    }
+
+
+    /**
+     *
+     * @param projectCount
+     * @param packageCount packages in each project's sbom
+     * @return zip file bytes
+     */
+    public static byte[] zip(int projectCount, int packageCount) {
+        var bytes = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bytes)) {
+            for (var i = 0; i < projectCount; i++) {
+                var projectName = projectName(i);
+                zip.putNextEntry(new ZipEntry(projectName + "/"));
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry(projectName + "/" + SBOM_FILE_NAME));
+                writeSyftSbom(zip, projectName, packageCount);
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry(projectName + "/" + BLAME_FILE_NAME));
+                zip.write(gitBlameBuildFile(packageCount).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry(projectName + "/" + METADATA_FILE_NAME));
+                zip.write(etlBuildMetadata(projectName).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * writes a syft json report. packages form a tree - each one is a dependency of the package FAN_OUT places up
+     * from it - so there is a graph to walk and not just a flat list.
+     *
+     * @param out left open
+     * @param projectName
+     * @param packageCount
+     * @throws IOException
+     */
+    public static void writeSyftSbom(OutputStream out, String projectName, int packageCount) throws IOException {
+        var generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)
+                                   .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+
+        generator.writeArrayFieldStart("artifacts");
+        for (var i = 0; i < packageCount; i++) {
+            var name = packageName(i);
+            var version = packageVersion(i);
+            generator.writeStartObject();
+            generator.writeStringField("id", artifactId(i));
+            generator.writeStringField("name", name);
+            generator.writeStringField("version", version);
+            generator.writeStringField("type", "java-archive");
+            generator.writeStringField("foundBy", "java-pom-cataloger");
+            generator.writeArrayFieldStart("locations");
+            generator.writeStartObject();
+            generator.writeStringField("path", "/pom.xml");
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("licenses");
+            generator.writeEndArray();
+            generator.writeStringField("language", "java");
+            generator.writeArrayFieldStart("cpes");
+            generator.writeEndArray();
+            generator.writeStringField("purl", "pkg:maven/" + packageGroup(i) + "/" + name + "@" + version);
+            generator.writeStringField("metadataType", "java-archive");
+            generator.writeObjectFieldStart("metadata");
+            generator.writeObjectFieldStart("pomProperties");
+            generator.writeStringField("groupId", packageGroup(i));
+            generator.writeStringField("artifactId", name);
+            generator.writeStringField("version", version);
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("artifactRelationships");
+        for (var i = FAN_OUT; i < packageCount; i++) {
+            generator.writeStartObject();
+            generator.writeStringField("parent", artifactId(i));
+            generator.writeStringField("child", artifactId(i / FAN_OUT - 1));
+            generator.writeStringField("type", "dependency-of");
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeObjectFieldStart("source");
+        generator.writeStringField("id", artifactId(-1));
+        generator.writeStringField("name", projectName);
+        generator.writeStringField("version", "");
+        generator.writeStringField("type", "directory");
+        generator.writeObjectFieldStart("metadata");
+        generator.writeStringField("path", ".");
+        generator.writeEndObject();
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("distro");
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("descriptor");
+        generator.writeStringField("name", "syft");
+        generator.writeStringField("version", "1.4.1");
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("schema");
+        generator.writeStringField("version", "16.0.7");
+        generator.writeStringField(
+            "url",
+            "https://raw.githubusercontent.com/anchore/syft/main/schema/json/schema-16.0.7.json"
+        );
+        generator.writeEndObject();
+
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+
+    /**
+     *
+     * @param packageCount
+     * @return a pom declaring the top level packages of the sbom, in `git blame` default output format
+     */
+    public static String gitBlameBuildFile(int packageCount) {
+        var lines = new StringBuilder();
+        var lineNumber = new int[] { 0 };
+
+        appendBlame(lines, lineNumber, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        appendBlame(lines, lineNumber, "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">");
+        appendBlame(lines, lineNumber, "  <modelVersion>4.0.0</modelVersion>");
+        appendBlame(lines, lineNumber, "  <groupId>io.patchfox.bench</groupId>");
+        appendBlame(lines, lineNumber, "  <artifactId>bench</artifactId>");
+        appendBlame(lines, lineNumber, "  <version>1.0.0</version>");
+        appendBlame(lines, lineNumber, "  <dependencies>");
+        for (var i = 0; i < Math.min(FAN_OUT, packageCount); i++) {
+            appendBlame(lines, lineNumber, "    <dependency>");
+            appendBlame(lines, lineNumber, "      <groupId>" + packageGroup(i) + "</groupId>");
+            appendBlame(lines, lineNumber, "      <artifactId>" + packageName(i) + "</artifactId>");
+            appendBlame(lines, lineNumber, "      <version>" + packageVersion(i) + "</version>");
+            appendBlame(lines, lineNumber, "    </dependency>");
+        }
+        appendBlame(lines, lineNumber, "  </dependencies>");
+        appendBlame(lines, lineNumber, "</project>");
+        return lines.toString();
+    }
+
+
+    /**
+     *
+     * @param projectName
+     * @return
+     */
+    public static String etlBuildMetadata(String projectName) {
+        return "{"
+            + "\"projectName\":\"" + projectName + "\","
+            + "\"buildTool\":\"maven\","
+            + "\"commitHash\":\"" + COMMIT_HASH + "\","
+            + "\"commitBranch\":\"main\","
+            + "\"commitDateTime\":\"" + COMMIT_DATE_TIME + "\","
+            + "\"repoUrl\":\"https://example.com/" + DOMAIN + "/" + projectName + ".git\""
+            + "}";
+    }
+
+
+    private static void appendBlame(StringBuilder lines, int[] lineNumber, String line) {
+        lineNumber[0]++;
+        lines.append(COMMIT_HASH, 0, 8)
+             .append(" (Bench Author 2024-06-01 12:00:00 +0000 ")
+             .append(String.format("%3d", lineNumber[0]))
+             .append(") ")
+             .append(line)
+             .append('\n');
+    }
+
+    private static String artifactId(int index) {
+        return HexFormat.of().toHexDigits((long) index * 0x9E3779B97F4A7C15L);
+    }
+
+    private static String packageGroup(int index) {
+        return "io.patchfox.bench.group" + (index % 50);
+    }
+
+    private static String packageName(int index) {
+        return String.format("bench-package-%05d", index);
+    }
+
+    private static String packageVersion(int index) {
+        return (index % 7 + 1) + "." + (index % 13) + "." + (index % 5);
+    }
+
+}